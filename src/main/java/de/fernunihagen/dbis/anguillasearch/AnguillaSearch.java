@@ -1,6 +1,9 @@
 package de.fernunihagen.dbis.anguillasearch;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.gson.JsonObject;
@@ -13,12 +16,19 @@ import java.util.*;
 public final class AnguillaSearch {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AnguillaSearch.class);
+
+    // Maximum number of results shown for a search query.
+    private static final int MAX_RESULTS = 10;
      
     private AnguillaSearch() {
     } 
 
     /**
-     * Main method.
+     * Main method. The first argument is the JSON-File with the seed urls. If a second argument is given, it is the
+     * path of an index segment: an existing segment is opened instead of crawling, otherwise it is written after the crawl.
+     * With the option "--serve port" the search is offered by a {@link SearchServer} instead of the console.
+     * With the option "--normalizer porter|lemma|none" the tokens of a new crawl are stemmed or lemmatized,
+     * an opened segment uses the normalizer it was written with.
      *
      * @param args Command line arguments
      */
@@ -26,31 +36,85 @@ public final class AnguillaSearch {
 
         LOGGER.info("Starting AnguillaSearch...");
 
-        if (args.length < 1) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        int serverPort = -1;
+        int serveOption = arguments.indexOf("--serve");
+        if (serveOption >= 0) {
+            if (serveOption + 1 >= arguments.size()) {
+                LOGGER.error("Bitte geben Sie nach --serve einen Port an.");
+                return;
+            }
+            serverPort = Integer.parseInt(arguments.get(serveOption + 1));
+            arguments.subList(serveOption, serveOption + 2).clear();
+        }
+
+        TokenNormalizer normalizer = null;
+        int normalizerOption = arguments.indexOf("--normalizer");
+        if (normalizerOption >= 0) {
+            if (normalizerOption + 1 >= arguments.size()) {
+                LOGGER.error("Bitte geben Sie nach --normalizer porter, lemma oder none an.");
+                return;
+            }
+            try {
+                normalizer = TokenNormalizer.forName(arguments.get(normalizerOption + 1));
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Bitte geben Sie nach --normalizer porter, lemma oder none an.");
+                return;
+            }
+            arguments.subList(normalizerOption, normalizerOption + 2).clear();
+        }
+
+        if (arguments.isEmpty()) {
             LOGGER.error("Bitte geben Sie den Pfad zu einer JSON-Datei als Argument an.");
             return;
         } 
 
-        Crawler crawler = new Crawler();
-
-        String jsonFilePath = args[0];
+        String jsonFilePath = arguments.get(0);
+        Path segmentPath = (arguments.size() > 1) ? Paths.get(arguments.get(1)) : null;
 
         try { 
-            JsonObject jsonFile = Utils.parseJSONFile(jsonFilePath);
-            crawler.crawl(jsonFile);
-            
-            ReverseIndex reverseIndex = new ReverseIndex();
-            reverseIndex = crawler.getReverseIndex();
-            
-            PageRank pageRank = new PageRank(jsonFile);
-            pageRank.calculate();
-
-            int crawledPages = crawler.getCrawledPages().size();
-
-            LOGGER.info("Crawling and PageRank calculation completed");
-            LOGGER.info("You can now start searching.");
+            ReverseIndex reverseIndex;
+            DocumentStore documentStore;
+            SearchServer searchServer;
+
+            if (segmentPath != null && Files.exists(segmentPath)) {
+                // The index of an earlier crawl is opened, so no crawling is needed.
+                IndexSegment segment = IndexSegment.open(segmentPath);
+                reverseIndex = segment.getReverseIndex();
+                documentStore = segment.getDocumentStore();
+                searchServer = new SearchServer(segment);
+                LOGGER.info("Index segment opened: {}", segmentPath);
+            } else {
+                Crawler crawler = new Crawler();
+                crawler.getReverseIndex().setNormalizer(normalizer);
+                JsonObject jsonFile = Utils.parseJSONFile(jsonFilePath);
+                crawler.crawl(jsonFile);
+
+                // The PageRank is calculated once by the crawler and published to the Reverse Index.
+                reverseIndex = crawler.getReverseIndex();
+                documentStore = crawler.getDocumentStore();
+                searchServer = new SearchServer(crawler);
+                LOGGER.info("Crawling and PageRank calculation completed");
+
+                if (segmentPath != null) {
+                    IndexSegment.write(segmentPath, crawler);
+                    LOGGER.info("Index segment written: {}", segmentPath);
+                }
+            }
+
+            int crawledPages = documentStore.size();
+
             LOGGER.info("Pages indexed: {}", crawledPages);
 
+            if (serverPort >= 0) {
+                // The threads of the server keep running after the main method returns.
+                searchServer.start(serverPort);
+                Runtime.getRuntime().addShutdownHook(new Thread(searchServer::stop));
+                return;
+            }
+
+            LOGGER.info("You can now start searching.");
+
             try (Scanner scanner = new Scanner(System.in)) {
                 LOGGER.info("Welcome to AnguillaSearch!");
 
@@ -63,22 +127,23 @@ public final class AnguillaSearch {
                         break;
                     }
 
-                    List<Map.Entry<String, Double>> searchResults = reverseIndex.searchQuery(userQuery, true, jsonFile);
+                    List<Map.Entry<String, Double>> searchResults = reverseIndex.searchQuery(userQuery, true, MAX_RESULTS);
 
                     if (searchResults.isEmpty()) {
                         LOGGER.error("No results found for your query.");
                     } else {
-                        int resultNumber = 1;
-                        for (int i = 0; i < searchResults.size(); i++) {
-                            Map.Entry<String, Double> result = searchResults.get(i);
-                            String url = result.getKey();
+                        // The titles are read from the document store by the Document-ID, only for the shown results.
+                        int[] docIDs = new int[searchResults.size()];
+                        for (int i = 0; i < docIDs.length; i++) {
+                            docIDs[i] = documentStore.getDocID(searchResults.get(i).getKey());
+                        }
+                        String[] titles = documentStore.getTitles(docIDs);
 
-                            PageData pageData = crawler.getCrawledPages().stream()
-                                    .filter(page -> page.getURL().equals(url))
-                                    .findFirst()
-                                    .orElse(null);
+                        for (int i = 0; i < searchResults.size(); i++) {
+                            String url = searchResults.get(i).getKey();
+                            String title = (titles[i] != null) ? titles[i] : "No title available";
+                            int resultNumber = i + 1;
 
-                            String title = (pageData != null) ? pageData.getTitle() : "No title available";
                             LOGGER.info("Result {}:", resultNumber);
                             LOGGER.info("URL: {}", url);
                             LOGGER.info("Title: \"{}\"", title);
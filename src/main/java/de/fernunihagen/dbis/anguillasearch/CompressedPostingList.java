@@ -0,0 +1,292 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "CompressedPostingList" stores the postings of a token in blocks of 128 postings.
+ * Inside a block the Document-IDs are stored as the gaps to the previous Document-ID in the variable-byte format
+ * (7 bits per byte, the highest bit marks the last byte) and the TF-IDF-scores are quantized to 16 bits relative
+ * to the highest score of the list. For every block the last Document-ID and the start of the block are stored
+ * separately, so a cursor can skip whole blocks without decoding them. With a {@link PostingBlockCache} the cursors
+ * read the decoded blocks of frequently used lists from the cache instead of decoding them again.
+ */
+
+public final class CompressedPostingList implements Postings {
+
+    // Number of postings per block.
+    public static final int BLOCK_SIZE = 128;
+    private static final int WEIGHT_LEVELS = 0xFFFF;
+
+    private final byte[] data;
+    private final int[] blockLastDocIDs;
+    private final int[] blockOffsets;
+    private final int size;
+    private final float maxWeight;
+    // Cache of the decoded blocks and the Term-ID of this list in the cache, null if the blocks are not cached.
+    private final PostingBlockCache blockCache;
+    private final int termID;
+
+    private CompressedPostingList(byte[] data, int[] blockLastDocIDs, int[] blockOffsets, int size, float maxWeight,
+            PostingBlockCache blockCache, int termID) {
+        this.data = data;
+        this.blockLastDocIDs = blockLastDocIDs;
+        this.blockOffsets = blockOffsets;
+        this.size = size;
+        this.maxWeight = maxWeight;
+        this.blockCache = blockCache;
+        this.termID = termID;
+    }
+
+    /**
+     * Compresses a posting list.
+     *
+     * @param postings  the uncompressed posting list
+     *
+     * @return  the compressed posting list.
+     */
+
+    public static CompressedPostingList compress(PostingList postings) {
+        int size = postings.size();
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockLastDocIDs = new int[blockCount];
+        int[] blockOffsets = new int[blockCount];
+        float maxWeight = (float) postings.maxWeight();
+
+        // At most 5 bytes for a gap and 2 bytes for a weight.
+        byte[] buffer = new byte[size * 7];
+        int position = 0;
+        int previousDocID = -1;
+
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, size);
+            blockOffsets[block] = position;
+
+            for (int i = start; i < end; i++) {
+                int docID = postings.docID(i);
+                position = writeVInt(buffer, position, docID - previousDocID);
+                previousDocID = docID;
+            }
+            for (int i = start; i < end; i++) {
+                int quantized = quantize(postings.weight(i), maxWeight);
+                buffer[position++] = (byte) (quantized >>> 8);
+                buffer[position++] = (byte) quantized;
+            }
+            blockLastDocIDs[block] = previousDocID;
+        }
+        return new CompressedPostingList(Arrays.copyOf(buffer, position), blockLastDocIDs, blockOffsets, size, maxWeight,
+            null, -1);
+    }
+
+    /**
+     * Returns the same postings, whose cursors read the decoded blocks through a cache.
+     *
+     * @param cache  the cache of the decoded blocks
+     * @param termID  the Term-ID of the postings
+     *
+     * @return  the posting list with the cache, which shares the encoded postings with this list.
+     */
+
+    public CompressedPostingList withBlockCache(PostingBlockCache cache, int termID) {
+        return new CompressedPostingList(data, blockLastDocIDs, blockOffsets, size, maxWeight, cache, termID);
+    }
+
+    private static int quantize(double weight, float maxWeight) {
+        if (maxWeight <= 0.0f) {
+            return 0;
+        }
+        double relative = Math.min(Math.max(weight / maxWeight, 0.0), 1.0);
+        return (int) Math.round(relative * WEIGHT_LEVELS);
+    }
+
+    private static int writeVInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) (value & 0x7F);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) (value | 0x80);
+        return position;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return  the number of blocks.
+     */
+
+    public int blockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * @return  the number of bytes used by the compressed postings and the skip data.
+     */
+
+    public long sizeInBytes() {
+        return data.length + 8L * blockOffsets.length;
+    }
+
+    /**
+     * Decodes a block of postings into the given arrays, which must have room for BLOCK_SIZE postings.
+     *
+     * @param block  the number of the block
+     * @param docIDs  the array for the Document-IDs
+     * @param weights  the array for the TF-IDF-scores
+     *
+     * @return  the number of postings in the block.
+     */
+
+    public int decodeBlock(int block, int[] docIDs, float[] weights) {
+        int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        int position = blockOffsets[block];
+        int docID = (block == 0) ? -1 : blockLastDocIDs[block - 1];
+
+        for (int i = 0; i < count; i++) {
+            int gap = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) == 0);
+
+            docID += gap;
+            docIDs[i] = docID;
+        }
+
+        float scale = maxWeight / WEIGHT_LEVELS;
+        for (int i = 0; i < count; i++) {
+            int quantized = ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+            weights[i] = quantized * scale;
+            position += 2;
+        }
+        return count;
+    }
+
+    /**
+     * @param block  the number of the block
+     *
+     * @return  the last Document-ID of the block.
+     */
+
+    public int blockLastDocID(int block) {
+        return blockLastDocIDs[block];
+    }
+
+    @Override
+    public PostingCursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Cursor which decodes one block at a time. advance() first skips all blocks whose last Document-ID is
+     * smaller than the target and only decodes the block which contains the target. A cached block is read directly
+     * from the cache, otherwise the block is decoded into the buffers of the cursor.
+     */
+
+    private final class Cursor implements PostingCursor {
+
+        private int[] docBuffer;
+        private float[] weightBuffer;
+        // The postings of the current block, either the buffers or the arrays of a cached block.
+        private int[] docs;
+        private float[] weights;
+        private int block = -1;
+        private int blockSize = 0;
+        private int index = -1;
+        private int docID = -1;
+
+        @Override
+        public int docID() {
+            return docID;
+        }
+
+        @Override
+        public double weight() {
+            return weights[index];
+        }
+
+        @Override
+        public int next() {
+            if (docID == NO_MORE_DOCS) {
+                return NO_MORE_DOCS;
+            }
+            index++;
+            if (index >= blockSize && !loadBlock(block + 1)) {
+                return docID;
+            }
+            docID = docs[index];
+            return docID;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docID >= target) {
+                return docID;
+            }
+
+            // Skip the blocks which end before the target.
+            int targetBlock = Math.max(block, 0);
+            while (targetBlock < blockLastDocIDs.length && blockLastDocIDs[targetBlock] < target) {
+                targetBlock++;
+            }
+            if (targetBlock != block && !loadBlock(targetBlock)) {
+                return docID;
+            }
+            index = Math.max(index, 0);
+
+            while (docs[index] < target) {
+                index++;
+            }
+            docID = docs[index];
+            return docID;
+        }
+
+        private boolean loadBlock(int newBlock) {
+            if (newBlock >= blockOffsets.length) {
+                block = blockOffsets.length;
+                blockSize = 0;
+                index = 0;
+                docID = NO_MORE_DOCS;
+                return false;
+            }
+            block = newBlock;
+            index = 0;
+
+            PostingBlockCache.Block cached = (blockCache != null) ? blockCache.get(termID, newBlock, data) : null;
+            if (cached != null) {
+                docs = cached.docIDs;
+                weights = cached.weights;
+                blockSize = docs.length;
+                return true;
+            }
+
+            // The buffers are only allocated when a block has to be decoded.
+            if (docBuffer == null) {
+                docBuffer = new int[BLOCK_SIZE];
+                weightBuffer = new float[BLOCK_SIZE];
+            }
+            blockSize = decodeBlock(newBlock, docBuffer, weightBuffer);
+            docs = docBuffer;
+            weights = weightBuffer;
+            if (blockCache != null) {
+                blockCache.put(termID, newBlock, data, docBuffer, weightBuffer, blockSize);
+            }
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -22,41 +22,78 @@ public class Cosine {
      */
 
     public static double cosineSimilarity(Vector vector1, Vector vector2) {
+        return cosineSimilarity(vector1, magnitude(vector1), vector2, magnitude(vector2));
+    }
 
-        // Retrieve the token weights from both vectors.
-        Map<String, Double> metrics1 = vector1.getAllMetrics();
-        Map<String, Double> metrics2 = vector2.getAllMetrics();
- 
-        double dotProduct = 0.0;
-        double magnitude1 = 0.0;
-        double magnitude2 = 0.0;
-        double cosine;
+    /**
+     * Calculates the Cosine similarity of two sparse vectors. The magnitudes are already stored in the vectors,
+     * so only the dot product is calculated.
+     * 
+     * @param vector1  the first vector
+     * @param vector2  the second vector
+     * 
+     * @return  the calculated Cosine similarity. The value reaches from -1 to 1.
+     */
 
-        // Calculates the dot product for the numerator
-        for (String token : metrics1.keySet()) {
-            double value1 = metrics1.getOrDefault(token, 0.0);
-            double value2 = metrics2.getOrDefault(token, 0.0);
- 
-            dotProduct += value1 * value2;
-        }
+    public static double cosineSimilarity(SparseVector vector1, SparseVector vector2) {
+        return cosineSimilarity(vector1.dot(vector2), vector1.magnitude(), vector2.magnitude());
+    }
 
-        // Calculates the magnitude of the first vector
-        for (double value1 : metrics1.values()) {
-            magnitude1 += value1 * value1; 
+    /**
+     * Calculates the Cosine similarity from a dot product and the magnitudes of the two vectors.
+     * 
+     * @param dotProduct  the dot product of the two vectors
+     * @param magnitude1  the magnitude of the first vector
+     * @param magnitude2  the magnitude of the second vector
+     * 
+     * @return  the calculated Cosine similarity. The value reaches from -1 to 1.
+     */
+
+    public static double cosineSimilarity(double dotProduct, double magnitude1, double magnitude2) {
+
+        // A vector without any weight has no direction, so it isn`t similar to any other vector.
+        if (magnitude1 == 0.0 || magnitude2 == 0.0) {
+            return 0.0;
         }
+        return dotProduct / (magnitude1 * magnitude2);
+    }
+
+    /**
+     * Calculates the Cosine similarity with precomputed magnitudes. Only the tokens of the query are visited,
+     * so the costs depend on the length of the query and not on the size of the document vector.
+     * 
+     * @param query  the query vector
+     * @param queryMagnitude  the magnitude of the query vector
+     * @param document  the document vector
+     * @param documentMagnitude  the magnitude of the document vector
+     * 
+     * @return  the calculated Cosine similarity. The value reaches from -1 to 1.
+     */
 
-        // Calculates the magnitude of the second vector
-        for (double value2 : metrics2.values()) {
-            magnitude2 += value2 * value2;
+    public static double cosineSimilarity(Vector query, double queryMagnitude, Vector document, double documentMagnitude) {
+
+        // Calculates the dot product for the numerator
+        double dotProduct = 0.0;
+        for (Map.Entry<String, Double> entry : query.getAllMetrics().entrySet()) {
+            dotProduct += entry.getValue() * document.getMetrics(entry.getKey());
         }
+        return cosineSimilarity(dotProduct, queryMagnitude, documentMagnitude);
+    }
 
-        // Computes the square roots to finalize the magnitues
-        magnitude1 = Math.sqrt(magnitude1);
-        magnitude2 = Math.sqrt(magnitude2);
+    /**
+     * Calculates the magnitude (L2 norm) of a vector.
+     * 
+     * @param vector  the vector
+     * 
+     * @return  the square root of the sum of the squared weights.
+     */
 
-        // Calculates the Cosine similariy
-        cosine = dotProduct / (magnitude1 * magnitude2);
+    public static double magnitude(Vector vector) {
+        double magnitude = 0.0;
 
-        return cosine;
+        for (double value : vector.getAllMetrics().values()) {
+            magnitude += value * value;
+        }
+        return Math.sqrt(magnitude);
     }
 }
@@ -5,24 +5,99 @@ import org.jsoup.nodes.*;
 import org.jsoup.select.*;
 import java.util.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.Function;
 import com.google.gson.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
  
 /** 
  * The class "Crawler" fetches the websites from a given intranet. 
  * It builds a Forward Index, Reverse Index and calculates the TF-IDF values for the tokenized content of the crawled pages. 
+ * The crawled pages and the indexes are published as immutable snapshots at the end of a crawl or re-crawl,
+ * so they can be searched from other threads without locks while the next re-crawl is running.
  */
 
 public class Crawler { 
 
-    private Set<String> visitedURLs = new HashSet<>();
+    // The visited urls and the queue of urls are thread-safe, so the frontier can be expanded by concurrent fetches.
+    private Set<String> visitedURLs = ConcurrentHashMap.newKeySet();
     // Queue of urls to be processed 
-    private Queue<String> queueURL = new LinkedList<>();
-    private Set<String> allLinks = new HashSet<>();
+    private Queue<String> queueURL = new ConcurrentLinkedQueue<>();
+    private Set<String> allLinks = ConcurrentHashMap.newKeySet();
     private List<PageData> crawledPages = new ArrayList<>();
+    // The crawled pages indexed by their Document-ID. Pages which were removed by a re-crawl are null.
+    private List<PageData> pagesByDocID = new ArrayList<>();
+    // The pages which are read by getCrawledPages() and the search. They are copied from the lists above when they are published.
+    private final AtomicReference<PublishedPages> publishedPages = new AtomicReference<>(PublishedPages.EMPTY);
+    // The fetched version of every crawled page, which is used for the conditional requests of a re-crawl.
+    private Map<String, PageVersion> pageVersions = new ConcurrentHashMap<>();
+    // Registries of the integer ids, which are shared by all index structures of this crawler.
+    private DocumentRegistry documents = new DocumentRegistry();
+    private TermDictionary terms = new TermDictionary();
     private ForwardIndex forwardIndex = new ForwardIndex();
-    private ReverseIndex reverseIndex = new ReverseIndex();
+    private ReverseIndex reverseIndex = new ReverseIndex(documents, terms);
  
     int totalLinkCount = 0;
+    // The number of links of every crawled page by its Document-ID, so a re-crawl can correct the total count.
+    private final Map<Integer, Integer> linkCounts = new HashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(Crawler.class);
+
+    // In the streaming mode the partially crawled index is first published after PUBLISH_INTERVAL pages.
+    private static final int PUBLISH_INTERVAL = 100;
+    private final AtomicInteger streamedPages = new AtomicInteger();
+    // Number of crawled pages at which the partially crawled index is published next.
+    private final AtomicInteger nextPartialPublish = new AtomicInteger(PUBLISH_INTERVAL);
+
+    // In the streaming mode the pages are indexed while crawling and their tokens are not kept.
+    private boolean streamingIndex = false;
+
+    // Limits for concurrent crawling. With a global limit of 1 the pages are crawled sequentially.
+    private int maxConcurrency = 1;
+    private int maxConcurrencyPerHost = 1;
+    // Prepares the request of a page of the crawl. Replaced by the tests with a stub.
+    private Function<String, Connection> connector = Jsoup::connect;
+
+    /** 
+     * Enables or disables the streaming mode. In the streaming mode every page is added to the Reverse Index as soon
+     * as it is fetched. Only its raw term frequencies are stored and the TF-IDF-scores are calculated when the index
+     * is published, which also happens after every few pages while crawling, so a partially crawled index is searchable.
+     * 
+     * @param streamingIndex  true to index the pages while crawling
+     */
+
+    public void setStreamingIndex(boolean streamingIndex) {
+        this.streamingIndex = streamingIndex;
+    }
+
+    /** 
+     * Sets how many pages may be fetched at the same time. If the global limit is greater than 1, the pages are
+     * fetched concurrently on virtual threads (or on a thread pool if virtual threads are not available).
+     * 
+     * @param maxConcurrency  the maximum number of fetches running at the same time
+     * @param maxConcurrencyPerHost  the maximum number of fetches running at the same time for one host
+     */
+
+    public void setConcurrency(int maxConcurrency, int maxConcurrencyPerHost) {
+        if (maxConcurrency < 1 || maxConcurrencyPerHost < 1) {
+            throw new IllegalArgumentException("The concurrency limits must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+    }
+
+    /** 
+     * Sets how the requests of the crawled pages are prepared. Only used by the tests.
+     * 
+     * @param connector  prepares the request of a url
+     */
+
+    void setConnector(Function<String, Connection> connector) {
+        this.connector = connector;
+    }
 
     /** 
      * Extracts the seed-urls from the provided JSON-file and initializes the queue of urls to be crawled.
@@ -51,14 +126,22 @@ public class Crawler {
      */
 
     public void getFutherUrl (String url) throws IOException {
-        Document doc = Jsoup.connect(url).get();
+        getFutherUrl(Jsoup.connect(url).get());
+    }
 
+    /** 
+     * Extracts further urls from an already fetched website and adds them to the crawling queue.
+     * 
+     * @param doc  the fetched page to extract the further urls from
+     */
+
+    public void getFutherUrl (Document doc) {
         Elements links = doc.select("a[href]");
 
         for (Element link : links) {
             String otherLink = link.attr("abs:href");
-            if (otherLink != null && !otherLink.isEmpty() && !visitedURLs.contains(otherLink)) {
-                visitedURLs.add(otherLink);
+            // add() is atomic, so every url is only queued once, even if concurrent fetches find it at the same time.
+            if (otherLink != null && !otherLink.isEmpty() && visitedURLs.add(otherLink)) {
                 queueURL.add(otherLink);
             }
         }
@@ -75,7 +158,18 @@ public class Crawler {
      */
 
      public int getAllLinks(String url) throws IOException {
-        Document doc = Jsoup.connect(url).get();
+        return getAllLinks(Jsoup.connect(url).get());
+    }
+
+    /** 
+     * Counts the number of links on an already fetched website.
+     * 
+     * @param doc  the fetched page to count the links from 
+     * 
+     * @return  the total count of links on the website 
+     */
+
+    public int getAllLinks(Document doc) {
         Elements links = doc.select("a");
 
         int linkCount = 0;
@@ -122,53 +216,437 @@ public class Crawler {
     public void crawl (JsonObject jsonFilePath) throws IOException {
         getSeeds(jsonFilePath);
 
+        if (maxConcurrency > 1) {
+            crawlConcurrently();
+        } else {
+            while (!queueURL.isEmpty()) {
+                String url = queueURL.poll();
+                processPage(url, connector.apply(url).execute());
+                publishPartialIndex();
+            }
+        }
+        calculateTFIDF();
+        calculatePageRank();
+    }
+
+    /** 
+     * Crawls the intranet again after {@link #crawl(JsonObject)} and only updates the pages which changed.
+     * Every known page is requested conditionally with the ETag and Last-Modified values of its last version,
+     * so unchanged pages are usually answered with "304 Not Modified". Pages with a new content are tokenized again
+     * and replace their old version in the index, pages which don`t exist anymore are removed and new pages, which are
+     * linked by changed pages, are added. The document frequencies are updated for the changed documents only and
+     * the PageRank starts from the previous scores. The re-crawl needs the raw term statistics of the streaming mode.
+     * The requests keep the concurrency limits of {@link #setConcurrency(int, int)}. A page which can`t be fetched
+     * keeps its last version and a new page which can`t be fetched is skipped, so a failed request never leaves the
+     * index half updated. Searches, which run at the same time, read the old snapshot until the updated index is 
+     * published at the end.
+     * 
+     * @return  the number of changed, added and removed pages.
+     * 
+     * @throws IOException  if the thread is interrupted while the pages are fetched
+     */
+
+    public int recrawl() throws IOException {
+        if (!streamingIndex) {
+            throw new IllegalStateException("An incremental re-crawl needs the streaming index");
+        }
+        FetchLimiter limiter = new FetchLimiter(maxConcurrency, maxConcurrencyPerHost);
+        int changedPages = 0;
+        int removedPages = 0;
+        int addedPages = 0;
+
+        List<PageData> knownPages = new ArrayList<>(crawledPages);
+        List<Connection> requests = new ArrayList<>(knownPages.size());
+        for (PageData page : knownPages) {
+            Connection connection = Jsoup.connect(page.getURL()).ignoreHttpErrors(true);
+            PageVersion previous = pageVersions.get(page.getURL());
+            if (previous != null) {
+                previous.applyTo(connection);
+            }
+            requests.add(connection);
+        }
+        // All known pages are fetched before the index is changed.
+        List<Connection.Response> responses = fetchAll(limiter, requests);
+
+        for (int i = 0; i < knownPages.size(); i++) {
+            PageData page = knownPages.get(i);
+            String url = page.getURL();
+            Connection.Response response = responses.get(i);
+
+            // A failed request keeps the last version of the page.
+            if (response == null || PageVersion.isNotModified(response)) {
+                continue;
+            }
+            if (response.statusCode() == 404 || response.statusCode() == 410) {
+                removePage(page);
+                removedPages++;
+                continue;
+            }
+            if (response.statusCode() >= 400) {
+                logger.warn("Re-crawl of {} failed with status {}", url, response.statusCode());
+                continue;
+            }
+
+            PageVersion version = PageVersion.of(response);
+            PageVersion previous = pageVersions.get(url);
+            if (previous != null && previous.hasSameContent(version)) {
+                pageVersions.put(url, version);
+                continue;
+            }
+            Document doc;
+            try {
+                doc = response.parse();
+            } catch (IOException e) {
+                logger.warn("Re-crawl of {} failed: {}", url, e.getMessage());
+                continue;
+            }
+            replacePage(page, doc);
+            pageVersions.put(url, version);
+            changedPages++;
+        }
+
+        // New urls were only found on changed pages, because the links of the other pages are already known.
+        // Every round fetches the urls found by the pages of the round before.
         while (!queueURL.isEmpty()) {
-            String url = queueURL.poll();
-            getFutherUrl(url);
+            List<String> urls = new ArrayList<>();
+            String url;
+            while ((url = queueURL.poll()) != null) {
+                urls.add(url);
+            }
+
+            requests = new ArrayList<>(urls.size());
+            for (String newUrl : urls) {
+                requests.add(Jsoup.connect(newUrl).ignoreHttpErrors(true));
+            }
+            responses = fetchAll(limiter, requests);
+
+            for (int i = 0; i < urls.size(); i++) {
+                if (addNewPage(urls.get(i), responses.get(i))) {
+                    addedPages++;
+                }
+            }
         }
 
-        List<String> visitedUrlList = new ArrayList<>(visitedURLs);
+        logger.info("Re-crawl: {} changed, {} added and {} removed pages", changedPages, addedPages, removedPages);
 
-        for (int i = 0; i < visitedUrlList.size(); i++) {
-            String visitedUrl = visitedUrlList.get(i);
-            totalLinkCount += getAllLinks(visitedUrl); 
-    
-            PageData pageData = new PageData();
-            Vector vektor = new Vector();
-    
-            Document doc = Jsoup.connect(visitedUrl).get();
-            
-            String title = doc.title();
-            pageData.setTitle(title);
-    
-            Element headerElement = doc.selectFirst("h1");
-            String header = (headerElement != null) ? headerElement.text() : "";
-            pageData.setHeader(header); 
+        int churn = changedPages + addedPages + removedPages;
+        if (churn > 0) {
+            calculateTFIDF();
+            calculatePageRank(reverseIndex.getPageRankTable());
+        }
+        return churn;
+    }
 
-            Elements linkElements = doc.select("a[href]");
+    /** 
+     * Executes the requests through the FetchLimiter, concurrently if the global limit is greater than 1.
+     * 
+     * @return  the responses in the order of the requests. A request which failed with an IOException has no response.
+     */
 
-            doc.select("p a").remove();
-            String content = doc.body().text();
-            List<String> tokens = reverseIndex.tokenizeContent(content);
-            pageData.setTokens(tokens);
+    private List<Connection.Response> fetchAll(FetchLimiter limiter, List<Connection> requests) throws IOException {
+        List<Connection.Response> responses = new ArrayList<>(requests.size());
 
-            for (Element linkElement : linkElements) {
-                String link = linkElement.attr("abs:href");
-                if (link != null && !link.isEmpty()) {
-                    pageData.addLink(link);
-                } 
+        if (maxConcurrency == 1) {
+            for (Connection request : requests) {
+                responses.add(fetchOrNull(limiter, request));
             }
-            String id = "doc_"+(i+1);
+            return responses;
+        }
 
-            String url = visitedUrl;
+        ExecutorService executor = VirtualThreads.newExecutor("crawler", maxConcurrency);
+        try {
+            List<Future<Connection.Response>> futures = new ArrayList<>(requests.size());
+            for (Connection request : requests) {
+                futures.add(executor.submit(() -> fetchOrNull(limiter, request)));
+            }
+            for (Future<Connection.Response> future : futures) {
+                responses.add(future.get());
+            }
+            return responses;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while re-crawling", e);
+        } catch (ExecutionException e) {
+            // fetchOrNull() only lets unchecked exceptions through.
+            Throwable cause = e.getCause();
+            throw (cause instanceof RuntimeException) ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            pageData.setID(id);
-            pageData.setURL(url);
-    
-            crawledPages.add(pageData);
-            forwardIndex.createForwardIndex(id, vektor);
+    private static Connection.Response fetchOrNull(FetchLimiter limiter, Connection request) {
+        try {
+            return limiter.execute(request);
+        } catch (IOException e) {
+            logger.warn("Re-crawl of {} failed: {}", request.request().url(), e.getMessage());
+            return null;
+        }
+    }
+
+    /** 
+     * Adds a page, which was found by a re-crawl. A page which can`t be fetched is skipped and its url is forgotten,
+     * so it is requested again if a changed page links to it later.
+     * 
+     * @return  true if the page was added.
+     */
+
+    private boolean addNewPage(String url, Connection.Response response) {
+        if (response != null && response.statusCode() < 400) {
+            try {
+                processPage(url, response);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Re-crawl of {} failed: {}", url, e.getMessage());
+            }
+        } else if (response != null) {
+            logger.warn("Re-crawl of {} failed with status {}", url, response.statusCode());
+        }
+        visitedURLs.remove(url);
+        return false;
+    }
+
+    /** 
+     * Replaces the old version of a page with its new content. The page keeps its Document-ID.
+     */
+
+    private void replacePage(PageData oldPage, Document doc) {
+        getFutherUrl(doc);
+        int linkCount = getAllLinks(doc);
+        PageData pageData = extractPage(oldPage.getURL(), doc);
+        List<String> tokens = pageData.getTokens();
+        pageData.setTokens(new ArrayList<>());
+
+        synchronized (this) {
+            totalLinkCount += linkCount - linkCounts.getOrDefault(oldPage.getID(), 0);
+            linkCounts.put(oldPage.getID(), linkCount);
+            pageData.setID(oldPage.getID());
+            crawledPages.set(crawledPages.indexOf(oldPage), pageData);
+            pagesByDocID.set(pageData.getID(), pageData);
+        }
+        reverseIndex.removeDocument(pageData.getID());
+        reverseIndex.indexDocument(pageData.getID(), tokens);
+    }
+
+    /** 
+     * Removes a page which doesn`t exist anymore. Its url can be crawled again if a page links to it later.
+     */
+
+    private void removePage(PageData page) {
+        synchronized (this) {
+            Integer linkCount = linkCounts.remove(page.getID());
+            totalLinkCount -= (linkCount != null) ? linkCount : 0;
+            crawledPages.remove(page);
+            pagesByDocID.set(page.getID(), null);
+        }
+        // The vector of the page is removed when the Forward Index is published again.
+        reverseIndex.removeDocument(page.getID());
+        pageVersions.remove(page.getURL());
+        visitedURLs.remove(page.getURL());
+    }
+
+    /** 
+     * Processes a fetched page in a single pass: The further urls are added to the queue, the links are counted 
+     * and the title, header, tokens and links of the page are stored as a new PageData-Object.
+     * 
+     * @param url  the url of the page
+     * @param doc  the fetched page
+     */
+
+    void processPage(String url, Document doc) {
+        getFutherUrl(doc);
+        int linkCount = getAllLinks(doc);
+        PageData pageData = extractPage(url, doc);
+        List<String> tokens = pageData.getTokens();
+
+        if (streamingIndex) {
+            pageData.setTokens(new ArrayList<>());
+        }
+
+        addCrawledPage(pageData, linkCount);
+
+        if (streamingIndex) {
+            reverseIndex.indexDocument(pageData.getID(), tokens);
+        }
+    }
+
+    /** 
+     * Processes a fetched page like {@link #processPage(String, Document)} and remembers its version for re-crawls.
+     * 
+     * @param url  the url of the page
+     * @param response  the response of the page
+     * 
+     * @throws IOException  if the page can`t be parsed
+     */
+
+    private void processPage(String url, Connection.Response response) throws IOException {
+        PageVersion version = PageVersion.of(response);
+        processPage(url, response.parse());
+        pageVersions.put(url, version);
+    }
+
+    /** 
+     * Publishes the partially crawled index in the streaming mode. Every publish rebuilds all posting lists, because 
+     * the TF-IDF-scores of all documents change with the number of documents. That`s why the interval doubles with 
+     * the number of crawled pages (100, 200, 400, ... pages): all publishes together cost at most twice as much as
+     * the last one instead of growing quadratically with the size of the intranet.
+     * The PageRank and the Forward Index are only published at the end of the crawl.
+     */
+
+    private void publishPartialIndex() {
+        if (!streamingIndex) {
+            return;
+        }
+        int count = streamedPages.incrementAndGet();
+        int next = nextPartialPublish.get();
+        // Only one of the concurrent fetches, which reach the limit, publishes the index.
+        if (count >= next && nextPartialPublish.compareAndSet(next, count + Math.max(PUBLISH_INTERVAL, count))) {
+            publishPages(reverseIndex.getPageRankTable());
+            reverseIndex.refresh();
+        }
+    }
+
+    /** 
+     * Publishes copies of the crawled pages with their PageRank. The pages of a published snapshot are never changed,
+     * so they can be read by other threads while the next crawl or re-crawl is running.
+     * 
+     * @param pageRanks  the PageRank table, which is published with the pages
+     */
+
+    private synchronized void publishPages(PageRankTable pageRanks) {
+        List<PageData> pages = new ArrayList<>(crawledPages.size());
+        PageData[] pagesByID = new PageData[pagesByDocID.size()];
+
+        for (PageData page : crawledPages) {
+            PageData published = new PageData(page);
+            published.setPageRank(pageRanks.getScore(page.getURL()));
+            pages.add(published);
+            pagesByID[page.getID()] = published;
+        }
+        DocumentStore store = DocumentStore.of(documents, pagesByDocID);
+        publishedPages.set(new PublishedPages(Collections.unmodifiableList(pages), pagesByID, store));
+        // The store is published with the next snapshot of the Reverse Index, so the search reads matching titles.
+        reverseIndex.setDocumentStore(store);
+    }
+
+    /** 
+     * Extracts the title, header, tokens and links of a fetched page.
+     * 
+     * @param url  the url of the page
+     * @param doc  the fetched page
+     * 
+     * @return  the new PageData-Object without Document-ID.
+     */
+
+    private PageData extractPage(String url, Document doc) {
+        PageData pageData = new PageData();
+        pageData.setURL(url);
+        pageData.setTitle(doc.title());
+
+        Element headerElement = doc.selectFirst("h1");
+        String header = (headerElement != null) ? headerElement.text() : "";
+        pageData.setHeader(header); 
+
+        Elements linkElements = doc.select("a[href]");
+
+        doc.select("p a").remove();
+        String content = doc.body().text();
+        pageData.setTokens(reverseIndex.tokenizeContent(content));
+
+        for (Element linkElement : linkElements) {
+            String link = linkElement.attr("abs:href");
+            if (link != null && !link.isEmpty()) {
+                pageData.addLink(link);
+            } 
+        }
+        return pageData;
+    }
+
+    /** 
+     * Stores a processed page and assigns its Document-ID. The method is synchronized, because pages are added by 
+     * concurrent fetches. A page which was removed by a re-crawl and is found again gets its old Document-ID.
+     * 
+     * @param pageData  the processed page
+     * @param linkCount  the number of links on the page
+     */
+
+    private synchronized void addCrawledPage(PageData pageData, int linkCount) {
+        totalLinkCount += linkCount;
+        pageData.setID(documents.register(pageData.getURL()));
+        linkCounts.put(pageData.getID(), linkCount);
+        crawledPages.add(pageData);
+
+        while (pagesByDocID.size() <= pageData.getID()) {
+            pagesByDocID.add(null);
+        }
+        pagesByDocID.set(pageData.getID(), pageData);
+    }
+
+    /** 
+     * Fetches and processes all urls of the queue concurrently until no new urls are found. Every fetched page adds its 
+     * further urls to the queue and schedules them, while the FetchLimiter keeps the global and the per-host limit.
+     * The first error of a fetch stops the crawl and is thrown like in the sequential crawl.
+     * 
+     * @throws IOException  if an error occurs while page fetching 
+     */
+
+    private void crawlConcurrently() throws IOException {
+        FetchLimiter limiter = new FetchLimiter(maxConcurrency, maxConcurrencyPerHost);
+        // Number of scheduled fetches which are not finished yet. The crawling thread holds one unit until all seeds are scheduled.
+        AtomicInteger pending = new AtomicInteger(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService executor = VirtualThreads.newExecutor("crawler", maxConcurrency);
+        try {
+            scheduleQueuedUrls(executor, limiter, pending, finished, failure);
+            if (pending.decrementAndGet() == 0) {
+                finished.countDown();
+            }
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while crawling", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    private void scheduleQueuedUrls(ExecutorService executor, FetchLimiter limiter, AtomicInteger pending,
+            CountDownLatch finished, AtomicReference<Throwable> failure) {
+        String url;
+
+        while ((url = queueURL.poll()) != null) {
+            String nextUrl = url;
+            pending.incrementAndGet();
+
+            executor.execute(() -> {
+                try {
+                    // After the first error no further pages are fetched, like in the sequential crawl.
+                    if (failure.get() == null) {
+                        processPage(nextUrl, limiter.execute(connector.apply(nextUrl)));
+                        publishPartialIndex();
+                        scheduleQueuedUrls(executor, limiter, pending, finished, failure);
+                    }
+                } catch (IOException | RuntimeException | Error e) {
+                    // The executor would swallow the error, so it is kept and thrown by the crawling thread.
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        finished.countDown();
+                    }
+                }
+            });
         }
-        calculateTFIDF();
     }
 
     public int getVisitedWebsites (JsonObject jsonFilePath) throws IOException { 
@@ -176,8 +654,30 @@ public class Crawler {
         return visitedURLs.size();
     }
  
+    /** 
+     * @return  the published crawled pages as an unmodifiable list.
+     */
+
     public List<PageData> getCrawledPages() {
-        return crawledPages;
+        return publishedPages.get().pages;
+    }
+
+    /** 
+     * @param docID  the Document-ID of a page
+     * 
+     * @return  the published page with the Document-ID or null if there is no such page.
+     */
+
+    public PageData getPage(int docID) {
+        return publishedPages.get().getPage(docID);
+    }
+
+    /** 
+     * @return  the stored fields of the published pages, which are read by the Document-ID or the url.
+     */
+
+    public DocumentStore getDocumentStore() {
+        return publishedPages.get().store;
     }
 
     public ForwardIndex getForwardIndex() {
@@ -188,13 +688,34 @@ public class Crawler {
         return reverseIndex;
     }
 
+    public DocumentRegistry getDocuments() {
+        return documents;
+    }
+
+    public TermDictionary getTerms() {
+        return terms;
+    }
+
     /** 
      * Calculates the TF-IDF values for the token in all crawled pages.
      */
 
     public void calculateTFIDF() {
+        if (reverseIndex.getTermStatistics() != null) {
+            // In the streaming mode the Reverse Index is already complete, only the vectors of the Forward Index are created.
+            Map<Integer, SparseVector> vectors = reverseIndex.getTermStatistics().createDocumentVectors();
+            SparseVector[] forwardVectors = new SparseVector[documents.size()];
+
+            for (PageData page : crawledPages) {
+                forwardVectors[page.getID()] = vectors.getOrDefault(page.getID(), SparseVector.EMPTY);
+            }
+            forwardIndex.publish(forwardVectors);
+            return;
+        }
+
         Map<String, Integer> documentFrequencies = new HashMap<>();
         int totalDocuments = crawledPages.size();
+        SparseVector[] forwardVectors = new SparseVector[documents.size()];
 
         // Calculate the document frequencies
         for(PageData page : crawledPages) {
@@ -209,17 +730,55 @@ public class Crawler {
             List<String> tokens = page.getTokens();
             Map<String, Double> tfidfScores = TFIDF.calculate(tokens, totalDocuments, documentFrequencies);
     
-            Vector vektor = new Vector();
+            // The weights of the vector are collected by Term-ID, so they are sorted for the sparse vector.
+            PostingsBuilder vektor = new PostingsBuilder();
             for (Map.Entry<String, Double> entry : tfidfScores.entrySet()) {
-                String token = entry.getKey();
+                int termID = terms.register(entry.getKey());
                 double tfidf = entry.getValue();
     
-                reverseIndex.addToken(token, page.getURL(), tfidf);
-                vektor.addToken(token, tfidf);
+                reverseIndex.addToken(termID, page.getID(), tfidf);
+                vektor.put(termID, tfidf);
             }
     
-            forwardIndex.createForwardIndex(page.getID(), vektor);
+            forwardVectors[page.getID()] = SparseVector.from(vektor);
         }
+        forwardIndex.publish(forwardVectors);
+    }
+
+    /** 
+     * Calculates the PageRank of the crawled pages once and publishes the scores to the Reverse Index, 
+     * so search queries only have to read them. The crawled pages and the Reverse Index are published with them.
+     */
+
+    public void calculatePageRank() {
+        calculatePageRank(null);
+    }
+
+    /** 
+     * Calculates the PageRank like {@link #calculatePageRank()}, starting from the scores of an earlier calculation.
+     * 
+     * @param previousScores  the earlier PageRank scores or null to start from the uniform distribution
+     */
+
+    private void calculatePageRank(PageRankTable previousScores) {
+        PageRank pageRank = new PageRank(crawledPages);
+
+        try {
+            if (previousScores != null) {
+                pageRank.calculate(previousScores);
+            } else {
+                pageRank.calculate();
+            }
+        } catch (IOException e) {
+            // Can`t happen, because the pages were already crawled.
+            throw new UncheckedIOException(e);
+        }
+        logger.debug("PageRank of {} pages: {} iterations, {} pushes, residual {}",
+                     crawledPages.size(), pageRank.getIterations(), pageRank.getPushes(), pageRank.getResidual());
+        // The pages are published first, so every Document-ID found by the search has its page.
+        PageRankTable pageRanks = pageRank.getPageRankTable();
+        publishPages(pageRanks);
+        reverseIndex.publishPageRank(pageRanks);
     }
 
     /** 
@@ -231,19 +790,83 @@ public class Crawler {
      */
  
     public List<PageData> rankWebsites(Vector queryVektor) {
-        List<PageData> rankedPages = new ArrayList<>();
+        return rankWebsites(queryVektor, Integer.MAX_VALUE);
+    }
+
+    /** 
+     * Ranks the websites based on their similarity to a query vector and their PageRank and returns the k best pages.
+     * The pages are collected in a bounded heap, so only the k best pages are sorted.
+     * 
+     * @param queryVektor  Vector which represents the query
+     * @param k  the maximum number of ranked pages
+     * 
+     * @return a list of the k best ranked Pagedata-Objects
+     */
  
-        for (PageData page : crawledPages) {
-            double pageRank = page.getPageRank();
-            Vector vektor = forwardIndex.getForwardIndex(page.getID());
-            double cosineSimilarity = Cosine.cosineSimilarity(vektor, queryVektor);
+    public List<PageData> rankWebsites(Vector queryVektor, int k) {
+        return rankWebsites(SparseVector.fromVector(queryVektor, terms), k);
+    }
+
+    /** 
+     * Ranks the websites like {@link #rankWebsites(Vector, int)} for a query vector of Term-IDs.
+     * 
+     * @param queryVektor  sparse vector which represents the query
+     * @param k  the maximum number of ranked pages
+     * 
+     * @return a list of the k best ranked Pagedata-Objects
+     */
+ 
+    public List<PageData> rankWebsites(SparseVector queryVektor, int k) {
+        TopKCollector topK = new TopKCollector(k);
+        PublishedPages pages = publishedPages.get();
+        PageRankTable pageRanks = reverseIndex.getPageRankTable();
+ 
+        for (PageData page : pages.pages) {
+            double pageRank = pageRanks.getScore(page.getID());
+            // Only the few Term-IDs of the query are searched in the document vector. The magnitudes of the query and
+            // the documents are stored in the sparse vectors.
+            SparseVector vektor = forwardIndex.getForwardIndex(page.getID());
+            double cosineSimilarity = Cosine.cosineSimilarity(queryVektor.lookupDot(vektor), queryVektor.magnitude(),
+                vektor.magnitude());
             double combined = 0.7 * pageRank + 0.3 * cosineSimilarity;
 
-            page.setScore(combined);
+            topK.collect(page.getID(), combined);
+        }
+
+        int[] docIDs = new int[topK.size()];
+        double[] scores = new double[topK.size()];
+        int count = topK.drainSorted(docIDs, scores);
+
+        List<PageData> rankedPages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // The score belongs to this query, so it is set on a copy and the published page isn`t changed.
+            PageData page = new PageData(pages.getPage(docIDs[i]));
+            page.setScore(scores[i]);
             rankedPages.add(page);
         }
-        
-        rankedPages.sort((p1, p2) -> Double.compare(p2.getScore(), p1.getScore()));
         return rankedPages;
     }
-}
\ No newline at end of file
+
+    /** 
+     * The crawled pages at the time they were published. The lists are never changed.
+     */
+
+    private static final class PublishedPages {
+
+        private static final PublishedPages EMPTY = new PublishedPages(List.of(), new PageData[0], DocumentStore.EMPTY);
+
+        private final List<PageData> pages;
+        private final PageData[] pagesByDocID;
+        private final DocumentStore store;
+
+        private PublishedPages(List<PageData> pages, PageData[] pagesByDocID, DocumentStore store) {
+            this.pages = pages;
+            this.pagesByDocID = pagesByDocID;
+            this.store = store;
+        }
+
+        private PageData getPage(int docID) {
+            return (docID >= 0 && docID < pagesByDocID.length) ? pagesByDocID[docID] : null;
+        }
+    }
+}
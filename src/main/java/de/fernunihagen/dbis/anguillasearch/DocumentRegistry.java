@@ -0,0 +1,41 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The class "DocumentRegistry" maps the url of every crawled page to a dense integer Document-ID.
+ * All index structures of a crawl share one registry, so a Document-ID means the same page everywhere.
+ */
+
+public class DocumentRegistry extends IdRegistry {
+
+    /**
+     * Returns the Document-ID of a url and assigns a new one if the url is unknown.
+     *
+     * @param url  the url of the page
+     *
+     * @return  the Document-ID of the page.
+     */
+
+    public int register(String url) {
+        return super.register(url);
+    }
+
+    /**
+     * @param url  the url of the page
+     *
+     * @return  the Document-ID of the page or -1 if the page is unknown.
+     */
+
+    public int getDocID(String url) {
+        return getId(url);
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the url of the page with the given Document-ID.
+     */
+
+    public String getURL(int docID) {
+        return getKey(docID);
+    }
+}
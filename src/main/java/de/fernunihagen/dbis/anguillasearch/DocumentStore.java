@@ -0,0 +1,223 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The class "DocumentStore" stores the urls, titles, headers and links of the documents in columns, which are read
+ * directly by the Document-ID. Every column stores the UTF-8 bytes of all values in one array and the offset of each
+ * value in a second array, so a store needs no objects per document. A value is only decoded when it is read,
+ * so showing the k best results of a search decodes k titles, independent of the number of documents.
+ * A store is immutable and can be shared by all search threads.
+ */
+
+public final class DocumentStore {
+
+    // Store without any documents, used until the first pages are published.
+    public static final DocumentStore EMPTY = of(new DocumentRegistry(), List.of());
+
+    private final DocumentRegistry documents;
+    // Document-IDs which have stored data. Documents, which were removed by a re-crawl, are missing.
+    private final BitSet stored;
+    private final StringColumn urls;
+    private final StringColumn titles;
+    private final StringColumn headers;
+    // The links of the document d are the values linkOffsets[d] to linkOffsets[d + 1] - 1 of the links column.
+    private final int[] linkOffsets;
+    private final StringColumn links;
+
+    private DocumentStore(DocumentRegistry documents, BitSet stored, StringColumn urls, StringColumn titles,
+            StringColumn headers, int[] linkOffsets, StringColumn links) {
+        this.documents = documents;
+        this.stored = stored;
+        this.urls = urls;
+        this.titles = titles;
+        this.headers = headers;
+        this.linkOffsets = linkOffsets;
+        this.links = links;
+    }
+
+    /**
+     * Creates a store from the pages of a crawl.
+     *
+     * @param documents  the registry of the Document-IDs, which is used to look up urls
+     * @param pagesByDocID  the pages indexed by their Document-ID, null for Document-IDs without a page
+     *
+     * @return  the new store.
+     */
+
+    public static DocumentStore of(DocumentRegistry documents, List<PageData> pagesByDocID) {
+        int documentCount = pagesByDocID.size();
+        BitSet stored = new BitSet(documentCount);
+        StringColumn.Builder urls = new StringColumn.Builder();
+        StringColumn.Builder titles = new StringColumn.Builder();
+        StringColumn.Builder headers = new StringColumn.Builder();
+        StringColumn.Builder links = new StringColumn.Builder();
+        int[] linkOffsets = new int[documentCount + 1];
+
+        for (int docID = 0; docID < documentCount; docID++) {
+            PageData page = pagesByDocID.get(docID);
+
+            if (page != null) {
+                stored.set(docID);
+                urls.add(page.getURL());
+                titles.add(page.getTitle());
+                headers.add(page.getHeader());
+                for (String link : page.getLinks()) {
+                    links.add(link);
+                }
+            } else {
+                urls.add(null);
+                titles.add(null);
+                headers.add(null);
+            }
+            linkOffsets[docID + 1] = links.size();
+        }
+        return new DocumentStore(documents, stored, urls.build(), titles.build(), headers.build(), linkOffsets, links.build());
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  true if the store contains data of the document.
+     */
+
+    public boolean contains(int docID) {
+        return docID >= 0 && stored.get(docID);
+    }
+
+    /**
+     * @param url  the url of a document
+     *
+     * @return  the Document-ID of the document or -1 if the store doesn`t contain it.
+     */
+
+    public int getDocID(String url) {
+        int docID = documents.getDocID(url);
+        return contains(docID) ? docID : -1;
+    }
+
+    /**
+     * @return  the number of documents in the store.
+     */
+
+    public int size() {
+        return stored.cardinality();
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the url of the document or null if the store doesn`t contain it.
+     */
+
+    public String getURL(int docID) {
+        return contains(docID) ? urls.get(docID) : null;
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the title of the document or null if the store doesn`t contain it.
+     */
+
+    public String getTitle(int docID) {
+        return contains(docID) ? titles.get(docID) : null;
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the header of the document or null if the store doesn`t contain it.
+     */
+
+    public String getHeader(int docID) {
+        return contains(docID) ? headers.get(docID) : null;
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the links of the document, which are empty if the store doesn`t contain it.
+     */
+
+    public List<String> getLinks(int docID) {
+        if (!contains(docID)) {
+            return List.of();
+        }
+        String[] documentLinks = new String[linkOffsets[docID + 1] - linkOffsets[docID]];
+        for (int i = 0; i < documentLinks.length; i++) {
+            documentLinks[i] = links.get(linkOffsets[docID] + i);
+        }
+        return List.of(documentLinks);
+    }
+
+    /**
+     * Reads the titles of several documents, for example of the results of a search.
+     *
+     * @param docIDs  the Document-IDs
+     *
+     * @return  the titles in the order of the Document-IDs, null for documents which the store doesn`t contain.
+     */
+
+    public String[] getTitles(int[] docIDs) {
+        String[] documentTitles = new String[docIDs.length];
+        for (int i = 0; i < docIDs.length; i++) {
+            documentTitles[i] = getTitle(docIDs[i]);
+        }
+        return documentTitles;
+    }
+
+    /**
+     * A column of strings, stored as UTF-8 bytes of all values and the offsets of the values.
+     */
+
+    private static final class StringColumn {
+
+        private final byte[] bytes;
+        private final int[] offsets;
+
+        private StringColumn(byte[] bytes, int[] offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+        }
+
+        private String get(int index) {
+            return new String(bytes, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Collects the values of a column. Null is stored as an empty value.
+         */
+
+        private static final class Builder {
+
+            private byte[] bytes = new byte[256];
+            private int[] offsets = new int[17];
+            private int size = 0;
+
+            private void add(String value) {
+                byte[] valueBytes = (value != null) ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                int end = offsets[size] + valueBytes.length;
+
+                if (end > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(end, bytes.length * 2));
+                }
+                if (size + 2 > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                System.arraycopy(valueBytes, 0, bytes, offsets[size], valueBytes.length);
+                size++;
+                offsets[size] = end;
+            }
+
+            private int size() {
+                return size;
+            }
+
+            private StringColumn build() {
+                return new StringColumn(Arrays.copyOf(bytes, offsets[size]), Arrays.copyOf(offsets, size + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * The class "FetchLimiter" limits how many pages are fetched at the same time. There is a global limit for
+ * all fetches and a limit per host, so a single website isn`t flooded with requests by a concurrent crawl.
+ */
+
+public class FetchLimiter {
+
+    private final Semaphore globalPermits;
+    private final int maxPerHost;
+    // One semaphore for every host, which is created on the first request to the host.
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new limiter.
+     *
+     * @param maxConcurrency  the maximum number of fetches running at the same time
+     * @param maxPerHost  the maximum number of fetches running at the same time for one host
+     */
+
+    public FetchLimiter(int maxConcurrency, int maxPerHost) {
+        if (maxConcurrency < 1 || maxPerHost < 1) {
+            throw new IllegalArgumentException("The concurrency limits must be at least 1");
+        }
+        this.globalPermits = new Semaphore(maxConcurrency, true);
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * Fetches and parses a page as soon as both the host limit and the global limit allow it.
+     *
+     * @param url  the url of the page
+     *
+     * @return  the parsed page.
+     *
+     * @throws IOException  if an error occurs while page fetching or the thread is interrupted while waiting
+     */
+
+    public Document fetch(String url) throws IOException {
+        return execute(Jsoup.connect(url)).parse();
+    }
+
+    /**
+     * Executes a prepared request as soon as both the host limit and the global limit allow it.
+     *
+     * @param connection  the prepared connection, for example with the headers of a conditional request
+     *
+     * @return  the response of the request.
+     *
+     * @throws IOException  if an error occurs while page fetching or the thread is interrupted while waiting
+     */
+
+    public Connection.Response execute(Connection connection) throws IOException {
+        return withPermits(connection.request().url().toString(), connection::execute);
+    }
+
+    /**
+     * Runs a fetch of a url as soon as both the host limit and the global limit allow it.
+     *
+     * @param url  the url, whose host is limited
+     * @param fetch  the fetch, which runs while the permits are held
+     *
+     * @return  the result of the fetch.
+     *
+     * @throws IOException  if the fetch fails or the thread is interrupted while waiting
+     */
+
+    <T> T withPermits(String url, Fetch<T> fetch) throws IOException {
+        Semaphore host = hostPermits.computeIfAbsent(hostOf(url), h -> new Semaphore(maxPerHost, true));
+
+        // The host permit is acquired first, so a waiting fetch doesn`t block a global permit.
+        acquire(host, url);
+        try {
+            acquire(globalPermits, url);
+            try {
+                return fetch.run();
+            } finally {
+                globalPermits.release();
+            }
+        } finally {
+            host.release();
+        }
+    }
+
+    /**
+     * A fetch, which is limited by {@link #withPermits(String, Fetch)}.
+     */
+
+    interface Fetch<T> {
+        T run() throws IOException;
+    }
+
+    private static void acquire(Semaphore semaphore, String url) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to fetch " + url);
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return (host != null) ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -2,43 +2,73 @@ package de.fernunihagen.dbis.anguillasearch;
 
 import java.util.*;
 
-/**  
+/**
  * The class "ForwardIndex" maps Document-IDs from urls to the tokens they contain.
+ * The vectors are stored in an array, which is never changed after it was published. Every change publishes a new
+ * array, so the vectors are read without locks and a reader never sees a half updated Forward Index.
  */
 
 public class ForwardIndex {
-    
-    // Map representing the Forward Index. Key is the Document-ID (String) and the Value is a Vector of terms and weights.
-    private Map<String, Vector> forwardIndexValues = new HashMap<>();
-  
-    /** 
-     * Adds a new entry to the Forward Index
-     * 
-     * @param id  the Document-ID 
+
+    // Array representing the Forward Index. The vector of terms and weights of a document is stored at the position of its Document-ID.
+    private volatile SparseVector[] forwardIndexValues = new SparseVector[0];
+
+    /**
+     * Adds a new entry to the Forward Index. The magnitude of the vector was calculated when the vector was created.
+     * The whole array is copied, so many vectors should be added with {@link #publish(SparseVector[])}.
+     *
+     * @param docID  the Document-ID
      * @param vektor  the vektor containing terms and weights for the document
-     */ 
- 
-    public void createForwardIndex (String id, Vector vektor) {
-        forwardIndexValues.put(id, vektor); 
+     */
+
+    public synchronized void createForwardIndex (int docID, SparseVector vektor) {
+        SparseVector[] values = Arrays.copyOf(forwardIndexValues, Math.max(forwardIndexValues.length, docID + 1));
+        values[docID] = vektor;
+        forwardIndexValues = values;
+    }
+
+    /**
+     * Replaces all vectors of the Forward Index at once.
+     *
+     * @param vectors  the vectors indexed by the Document-ID, null for documents without a vector.
+     *                 The array must not be changed afterwards.
+     */
+
+    public synchronized void publish(SparseVector[] vectors) {
+        forwardIndexValues = vectors;
     }
 
     /**
      * Returns the vector associated with a specific Document-ID
-     * 
-     * @param id  the Document-ID
-     * 
-     * @return  the vector for the given Document-ID.
+     *
+     * @param docID  the Document-ID
+     *
+     * @return  the vector for the given Document-ID or an empty vector if the document has no vector.
+     */
+
+    public SparseVector getForwardIndex (int docID){
+        SparseVector[] values = forwardIndexValues;
+        SparseVector vektor = (docID >= 0 && docID < values.length) ? values[docID] : null;
+        return (vektor != null) ? vektor : SparseVector.EMPTY;
+    }
+
+    /**
+     * Returns the precomputed magnitude of the vector of a document.
+     *
+     * @param docID  the Document-ID
+     *
+     * @return  the magnitude of the vector or 0 if the document has no vector.
      */
 
-    public Vector getForwardIndex (String id){
-        return forwardIndexValues.get(id);
+    public double getMagnitude(int docID) {
+        return getForwardIndex(docID).magnitude();
     }
 
     /**
-     * @return  the entire Forward Index as a Map.
+     * @return  the entire Forward Index as a List, indexed by the Document-ID.
      */
 
-    public Map<String, Vector> getAllVectors() {
-        return forwardIndexValues;
+    public List<SparseVector> getAllVectors() {
+        return Collections.unmodifiableList(Arrays.asList(forwardIndexValues));
     }
 }
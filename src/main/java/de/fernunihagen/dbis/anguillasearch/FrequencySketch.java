@@ -0,0 +1,77 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The class "FrequencySketch" counts how often keys were requested, for the admission of new entries to a cache
+ * (TinyLFU). It is a count-min sketch: Every key increments one counter in each of four rows and its frequency is
+ * the smallest of these counters. The counters stop at 15 and are halved after 10 increments per counter of a row,
+ * so old popularity fades out and new popular keys can replace old ones. The sketch is not thread-safe.
+ */
+
+final class FrequencySketch {
+
+    private static final int ROWS = 4;
+    // Small caches get wider rows, so the counters of different keys rarely collide.
+    private static final int MIN_WIDTH = 64;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int increments = 0;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param capacity  the number of entries of the cache
+     */
+
+    FrequencySketch(int capacity) {
+        // Every row has at least as many counters as cached entries, rounded up to a power of two.
+        int width = Math.max(MIN_WIDTH, Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1);
+        this.counters = new byte[ROWS * width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Counts a request of a key.
+     *
+     * @param hash  the hash of the key
+     */
+
+    void increment(int hash) {
+        for (int row = 0; row < ROWS; row++) {
+            int index = indexOf(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+            }
+        }
+        if (++increments >= sampleSize) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+            increments = 0;
+        }
+    }
+
+    /**
+     * @param hash  the hash of the key
+     *
+     * @return  the estimated number of recent requests of the key, at most 15.
+     */
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+}
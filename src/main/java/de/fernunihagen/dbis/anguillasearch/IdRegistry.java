@@ -0,0 +1,79 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class "IdRegistry" assigns dense integer ids (0, 1, 2, ...) to strings. The ids are used as array indexes
+ * by the index structures, so they don`t have to hash strings. Lookups are lock-free, only the registration of
+ * a new string is synchronized.
+ */
+
+abstract class IdRegistry {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] keys = new String[16];
+    private volatile int size = 0;
+
+    /**
+     * Returns the id of a string and assigns the next free id if the string is new.
+     *
+     * @param key  the string
+     *
+     * @return  the id of the string.
+     */
+
+    int register(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            int newId = size;
+            if (newId == keys.length) {
+                keys = Arrays.copyOf(keys, newId * 2);
+            }
+            keys[newId] = key;
+            size = newId + 1;
+            ids.put(key, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * @param key  the string
+     *
+     * @return  the id of the string or -1 if it was never registered.
+     */
+
+    int getId(String key) {
+        Integer id = ids.get(key);
+        return (id != null) ? id : -1;
+    }
+
+    /**
+     * @param id  the id
+     *
+     * @return  the string with the given id.
+     */
+
+    String getKey(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown id: " + id);
+        }
+        return keys[id];
+    }
+
+    /**
+     * @return  the number of registered strings, which is also the next free id.
+     */
+
+    public int size() {
+        return size;
+    }
+}
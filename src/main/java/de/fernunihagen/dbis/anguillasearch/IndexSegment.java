@@ -0,0 +1,356 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The class "IndexSegment" stores a complete index in one binary file: the documents with their metadata and PageRank,
+ * the term dictionary, the posting lists and the vectors of the Forward Index. A segment is written once after a crawl
+ * and opened with {@link FileChannel#map}, so a search can start without crawling again. The posting lists are read
+ * directly from the mapped file and are shared with other processes through the page cache of the operating system.
+ *
+ * <p>Layout of a segment (all numbers big-endian, strings as length and UTF-8 bytes):
+ * <pre>
+ * header      MAGIC, VERSION, name of the token normalizer
+ * documents   stored flag, url, title, header, PageRank, number of links, links (for every Document-ID)
+ * terms       token                                                      (for every Term-ID)
+ * directory   number of postings, highest TF-IDF-score, offset           (for every Term-ID)
+ * postings    Document-IDs as int array, TF-IDF-scores as float array    (for every Term-ID)
+ * vectors     number of tokens, Term-IDs as int array, weights as double array (for every Document-ID)
+ * footer      document count, term count, offsets of the five sections, VERSION, MAGIC
+ * </pre>
+ * A single mapped buffer can`t be larger than 2 GB, which is also the limit of a segment.
+ */
+
+public final class IndexSegment {
+
+    // "ANGS" in ASCII.
+    static final int MAGIC = 0x414E4753;
+    static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int FOOTER_SIZE = 9 * Integer.BYTES;
+    private static final int DIRECTORY_ENTRY_SIZE = 3 * Integer.BYTES;
+
+    private final List<PageData> pages;
+    private final DocumentStore documentStore;
+    private final ReverseIndex reverseIndex;
+    private final ForwardIndex forwardIndex;
+    private final PageRankTable pageRankTable;
+
+    private IndexSegment(List<PageData> pages, DocumentStore documentStore, ReverseIndex reverseIndex, 
+            ForwardIndex forwardIndex, PageRankTable pageRankTable) {
+        this.pages = pages;
+        this.documentStore = documentStore;
+        this.reverseIndex = reverseIndex;
+        this.forwardIndex = forwardIndex;
+        this.pageRankTable = pageRankTable;
+    }
+
+    /**
+     * Writes the index of a finished crawl into a segment. The file is written under a temporary name and renamed
+     * at the end, so a reader never sees a half written segment.
+     *
+     * @param path  the path of the segment
+     * @param crawler  the crawler with the finished index
+     *
+     * @throws IOException if the segment can`t be written
+     */
+
+    public static void write(Path path, Crawler crawler) throws IOException {
+        ReverseIndex index = crawler.getReverseIndex();
+        DocumentRegistry documents = crawler.getDocuments();
+        TermDictionary terms = crawler.getTerms();
+        PageRankTable pageRanks = index.getPageRankTable();
+
+        int documentCount = documents.size();
+        int termCount = terms.size();
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            // The queries of the opened segment are normalized like its documents.
+            writeString(out, TokenNormalizer.nameOf(index.getNormalizer()));
+
+            int documentsOffset = out.size();
+            for (int docID = 0; docID < documentCount; docID++) {
+                // Pages which were removed by a re-crawl only keep their url, so the Document-IDs stay the same.
+                PageData page = crawler.getPage(docID);
+
+                out.writeBoolean(page != null);
+                writeString(out, documents.getURL(docID));
+                writeString(out, (page != null) ? page.getTitle() : "");
+                writeString(out, (page != null) ? page.getHeader() : "");
+                out.writeDouble(pageRanks.getScore(docID));
+
+                Set<String> links = (page != null) ? page.getLinks() : Set.of();
+                out.writeInt(links.size());
+                for (String link : links) {
+                    writeString(out, link);
+                }
+            }
+
+            int termsOffset = out.size();
+            for (int termID = 0; termID < termCount; termID++) {
+                writeString(out, terms.getToken(termID));
+            }
+
+            // The posting lists are copied first, so their sizes and offsets are known for the directory.
+            PostingList[] postingLists = new PostingList[termCount];
+            for (int termID = 0; termID < termCount; termID++) {
+                postingLists[termID] = toPostingList(index.getPostingList(termID));
+            }
+
+            int directoryOffset = out.size();
+            long postingsOffset = (long) directoryOffset + (long) DIRECTORY_ENTRY_SIZE * termCount;
+            long offset = postingsOffset;
+            for (PostingList postings : postingLists) {
+                out.writeInt(postings.size());
+                out.writeFloat((float) postings.maxWeight());
+                out.writeInt(checkedOffset(offset));
+                offset += (long) (Integer.BYTES + Float.BYTES) * postings.size();
+            }
+
+            for (PostingList postings : postingLists) {
+                for (int i = 0; i < postings.size(); i++) {
+                    out.writeInt(postings.docID(i));
+                }
+                for (int i = 0; i < postings.size(); i++) {
+                    out.writeFloat((float) postings.weight(i));
+                }
+            }
+
+            int vectorsOffset = checkedOffset(offset);
+            ForwardIndex forwardIndex = crawler.getForwardIndex();
+            for (int docID = 0; docID < documentCount; docID++) {
+                SparseVector vektor = forwardIndex.getForwardIndex(docID);
+
+                out.writeInt(vektor.size());
+                for (int i = 0; i < vektor.size(); i++) {
+                    out.writeInt(vektor.termID(i));
+                }
+                for (int i = 0; i < vektor.size(); i++) {
+                    out.writeDouble(vektor.value(i));
+                }
+            }
+
+            out.writeInt(documentCount);
+            out.writeInt(termCount);
+            out.writeInt(documentsOffset);
+            out.writeInt(termsOffset);
+            out.writeInt(directoryOffset);
+            out.writeInt(checkedOffset(postingsOffset));
+            out.writeInt(vectorsOffset);
+            out.writeInt(VERSION);
+            out.writeInt(MAGIC);
+
+            // The counter of the stream stops at Integer.MAX_VALUE.
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("The index is too large for a segment");
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens a segment. The documents, the term dictionary and the vectors are read into memory,
+     * the posting lists stay in the mapped file.
+     *
+     * @param path  the path of the segment
+     *
+     * @return  the opened segment.
+     *
+     * @throws IOException if the segment can`t be read or has an unknown format
+     */
+
+    public static IndexSegment open(Path path) throws IOException {
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a valid index segment: " + path);
+            }
+            // The mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(buffer.limit() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a valid index segment: " + path);
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION || buffer.getInt(buffer.limit() - 2 * Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported index segment version " + version + ": " + path);
+        }
+
+        TokenNormalizer normalizer;
+        try {
+            normalizer = TokenNormalizer.forName(readString(buffer.duplicate().position(HEADER_SIZE)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + path, e);
+        }
+
+        ByteBuffer footer = buffer.duplicate().position(buffer.limit() - FOOTER_SIZE);
+        int documentCount = footer.getInt();
+        int termCount = footer.getInt();
+        int documentsOffset = footer.getInt();
+        int termsOffset = footer.getInt();
+        int directoryOffset = footer.getInt();
+        footer.getInt();
+        int vectorsOffset = footer.getInt();
+
+        DocumentRegistry documents = new DocumentRegistry();
+        List<PageData> pages = new ArrayList<>(documentCount);
+        Map<String, Double> pageRanks = new HashMap<>();
+        ByteBuffer in = buffer.duplicate().position(documentsOffset);
+        for (int docID = 0; docID < documentCount; docID++) {
+            boolean stored = in.get() != 0;
+            PageData page = new PageData();
+            page.setURL(readString(in));
+            page.setTitle(readString(in));
+            page.setHeader(readString(in));
+            page.setPageRank(in.getDouble());
+            page.setID(documents.register(page.getURL()));
+
+            int linkCount = in.getInt();
+            for (int i = 0; i < linkCount; i++) {
+                page.addLink(readString(in));
+            }
+            // A removed page isn`t returned, but its Document-ID stays registered.
+            pages.add(stored ? page : null);
+            if (stored) {
+                pageRanks.put(page.getURL(), page.getPageRank());
+            }
+        }
+
+        TermDictionary terms = new TermDictionary();
+        in.position(termsOffset);
+        for (int termID = 0; termID < termCount; termID++) {
+            terms.register(readString(in));
+        }
+
+        Postings[] postingLists = new Postings[termCount];
+        in.position(directoryOffset);
+        for (int termID = 0; termID < termCount; termID++) {
+            int size = in.getInt();
+            float maxWeight = in.getFloat();
+            int offset = in.getInt();
+            postingLists[termID] = (size == 0) ? PostingList.EMPTY : new MappedPostingList(buffer, offset, size, maxWeight);
+        }
+
+        SparseVector[] vectors = new SparseVector[documentCount];
+        in.position(vectorsOffset);
+        for (int docID = 0; docID < documentCount; docID++) {
+            int size = in.getInt();
+            int[] termIDs = new int[size];
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                termIDs[i] = in.getInt();
+            }
+            for (int i = 0; i < size; i++) {
+                values[i] = in.getDouble();
+            }
+            vectors[docID] = (size == 0) ? SparseVector.EMPTY : new SparseVector(termIDs, values);
+        }
+        ForwardIndex forwardIndex = new ForwardIndex();
+        forwardIndex.publish(vectors);
+
+        PageRankTable pageRankTable = new PageRankTable(pageRanks);
+        DocumentStore documentStore = DocumentStore.of(documents, pages);
+        ReverseIndex reverseIndex = new ReverseIndex(documents, terms, postingLists);
+        reverseIndex.setDocumentStore(documentStore);
+        reverseIndex.publishPageRank(pageRankTable);
+        reverseIndex.setNormalizer(normalizer);
+
+        return new IndexSegment(Collections.unmodifiableList(pages), documentStore, 
+            reverseIndex, forwardIndex, reverseIndex.getPageRankTable());
+    }
+
+    /**
+     * @return  the pages of the segment, indexed by the Document-ID. Their content and tokens are not stored.
+     *          Pages which were removed by a re-crawl before the segment was written are null.
+     */
+
+    public List<PageData> getPages() {
+        return pages;
+    }
+
+    /**
+     * @return  the stored fields of the pages, which are read by the Document-ID or the url.
+     */
+
+    public DocumentStore getDocumentStore() {
+        return documentStore;
+    }
+
+    /**
+     * @return  the Reverse Index of the segment, which can be searched but not changed.
+     */
+
+    public ReverseIndex getReverseIndex() {
+        return reverseIndex;
+    }
+
+    /**
+     * @return  the Forward Index of the segment.
+     */
+
+    public ForwardIndex getForwardIndex() {
+        return forwardIndex;
+    }
+
+    /**
+     * @return  the PageRank scores of the segment.
+     */
+
+    public PageRankTable getPageRankTable() {
+        return pageRankTable;
+    }
+
+    private static PostingList toPostingList(Postings postings) {
+        if (postings instanceof PostingList) {
+            return (PostingList) postings;
+        }
+        int[] docIDs = new int[postings.size()];
+        float[] weights = new float[postings.size()];
+        PostingCursor cursor = postings.cursor();
+
+        for (int i = 0; cursor.next() != PostingCursor.NO_MORE_DOCS; i++) {
+            docIDs[i] = cursor.docID();
+            weights[i] = (float) cursor.weight();
+        }
+        return new PostingList(docIDs, weights);
+    }
+
+    private static int checkedOffset(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("The index is too large for a segment");
+        }
+        return (int) offset;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
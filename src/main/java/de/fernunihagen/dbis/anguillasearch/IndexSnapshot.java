@@ -0,0 +1,105 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The class "IndexSnapshot" is an immutable state of the Reverse Index, which is read by the search: the posting lists,
+ * the PageRank table, the stored fields of the documents and the number of documents at the time the snapshot was
+ * published. A search query reads the current snapshot once and uses only this snapshot, so it never sees a half
+ * updated index and never takes a lock, while a crawl or re-crawl prepares the next snapshot. Every published snapshot gets a higher generation number.
+ */
+
+public final class IndexSnapshot {
+
+    // Snapshot without any documents, used until the first snapshot is published.
+    static final IndexSnapshot EMPTY = new IndexSnapshot(new Postings[0], PageRankTable.EMPTY, DocumentStore.EMPTY, 0, 0);
+
+    private final Postings[] postingLists;
+    private final PageRankTable pageRankTable;
+    private final DocumentStore documentStore;
+    private final int documentCount;
+    private final long generation;
+
+    IndexSnapshot(Postings[] postingLists, PageRankTable pageRankTable, DocumentStore documentStore, int documentCount,
+            long generation) {
+        this.postingLists = postingLists;
+        this.pageRankTable = pageRankTable;
+        this.documentStore = documentStore;
+        this.documentCount = documentCount;
+        this.generation = generation;
+    }
+
+    /**
+     * Creates the next snapshot with new posting lists and the PageRank table of this snapshot.
+     *
+     * @param postingLists  the posting lists indexed by the Term-ID. The array must not be changed afterwards.
+     * @param documentCount  the number of registered documents
+     *
+     * @return  the new snapshot.
+     */
+
+    IndexSnapshot withPostingLists(Postings[] postingLists, int documentCount) {
+        return new IndexSnapshot(postingLists, pageRankTable, documentStore, documentCount, generation + 1);
+    }
+
+    /**
+     * Creates the next snapshot with a new PageRank table and new stored fields, and the posting lists of this snapshot.
+     *
+     * @param pageRankTable  the PageRank table
+     * @param documentStore  the stored fields of the documents
+     *
+     * @return  the new snapshot.
+     */
+
+    IndexSnapshot withPageRankTable(PageRankTable pageRankTable, DocumentStore documentStore) {
+        return new IndexSnapshot(postingLists, pageRankTable, documentStore, documentCount, generation + 1);
+    }
+
+    /**
+     * @param termID  the Term-ID of the token
+     *
+     * @return  the posting list of the token, which is empty for an unknown token.
+     */
+
+    public Postings getPostingList(int termID) {
+        return (termID >= 0 && termID < postingLists.length) ? postingLists[termID] : PostingList.EMPTY;
+    }
+
+    /**
+     * @return  the number of Term-IDs which have a posting list.
+     */
+
+    public int getTermCount() {
+        return postingLists.length;
+    }
+
+    /**
+     * @return  the PageRank table of the snapshot.
+     */
+
+    public PageRankTable getPageRankTable() {
+        return pageRankTable;
+    }
+
+    /**
+     * @return  the stored fields of the documents, which were published together with the posting lists.
+     */
+
+    public DocumentStore getDocumentStore() {
+        return documentStore;
+    }
+
+    /**
+     * @return  the number of registered documents. Every Document-ID in the posting lists is smaller.
+     */
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * @return  the generation of the snapshot, which grows with every published snapshot of an index.
+     */
+
+    public long getGeneration() {
+        return generation;
+    }
+}
@@ -1,59 +1,295 @@
 package de.fernunihagen.dbis.anguillasearch;
- 
+
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties; 
- 
-/** 
- * The class "Lemmatizer" uses the Standford CoreNLP library to perform lemmatization. 
+import edu.stanford.nlp.util.CoreMap;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class "Lemmatizer" uses the Standford CoreNLP library to perform lemmatization.
  * Lemmatization reduces words into their base form. For example: The word "happier" is reduces into "happy".
  * This is important for natural languagae processing tasks, like in this search machine.
+ * The CoreNLP pipeline is loaded when the first word is lemmatized and then shared by all lemmatizers through a pool,
+ * so every thread can annotate without waiting for the others. The lemma of every word is cached, so a word is only
+ * sent to CoreNLP the first time it occurs. The cache evicts the least recently used words when it is full, so the
+ * frequent words of a long crawl stay cached, even if they occur late.
+ *
+ * <p>The unknown words of a document are tagged once each, in the order they first occur, and not in their sentences.
+ * So a word gets one lemma for all its occurrences and the part-of-speech tagger sees less context than in the full
+ * text: a word which is both a noun and a verb, like "saw", may get the lemma of the other part of speech. For the
+ * index this costs a few lemmas of ambiguous words, while every word is tagged only once.
+ *
+ * <p>Large caches are split into up to 16 segments by the hash of the words. Every segment has its own lock and its
+ * own LRU order, so concurrent threads rarely wait for each other.
  */
-  
-public class Lemmatizer {
-
-    // Stanford CoreNLP pipeline used for processing text 
-    private StanfordCoreNLP pipeline;
- 
-    /** 
-     * Constructs a Lemmatizer instance.
-     * Stanford CoreNLP pipelie is initialized with the following necessary annotators:
-     * "tokenize" is used for splitting the text into tokens
-     * "ssplit" is used for sentece splitting 
-     * "pos" is used for part-of-speech tagging 
-     * "lemma" is used for lemmatization 
+
+public class Lemmatizer implements TokenNormalizer {
+
+    static final String NAME = "lemma";
+
+    // Default number of words in the cache. A few hundred thousand words cover almost all words of a large intranet.
+    private static final int DEFAULT_CACHE_SIZE = 200_000;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_WORDS = 1024;
+
+    // Maximum number of pipelines, so as many threads as cores can annotate at the same time.
+    private static final int MAX_PIPELINES = Runtime.getRuntime().availableProcessors();
+    // Pipelines which are not used right now. They share the loaded models, so only the first pipeline takes long to create.
+    private static final BlockingQueue<StanfordCoreNLP> PIPELINES = new LinkedBlockingQueue<>();
+    private static final AtomicInteger createdPipelines = new AtomicInteger();
+
+    // Lemmas of the words which were already lemmatized, split into segments by the hash of the words.
+    private final Segment[] cache;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * Constructs a Lemmatizer instance with the default cache size.
      */
- 
+
     public Lemmatizer() {
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize, ssplit, pos, lemma");
-        this.pipeline = new StanfordCoreNLP(props);
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a Lemmatizer instance. If the cache is full, a new word replaces the least recently used word.
+     *
+     * @param cacheSize  the maximum number of cached words
+     */
+
+    public Lemmatizer(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("The cache size must not be negative");
+        }
+        int segmentCount = Integer.highestOneBit(Math.min(MAX_SEGMENTS, Math.max(1, cacheSize / MIN_SEGMENT_WORDS)));
+        this.cache = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // The first segments get the remainder, so the segments hold exactly cacheSize words together.
+            cache[i] = new Segment(cacheSize / segmentCount + ((i < cacheSize % segmentCount) ? 1 : 0));
+        }
     }
 
-    /** 
+    /**
      * Lemmatizes a given list of tokens and processes them using the CoreNLP pipeline.
-     * 
+     *
      * @param tokens  a list of Strings representing the tokens which should be lemmatized.
-     * 
-     * @return  a list of the lemmatized input tokens. 
+     *
+     * @return  a list of the lemmatized input tokens, one lemma for every token.
      */
 
     public List<String> lemmatize(List<String> tokens) {
-        List<String> lemmas = new ArrayList<>();
+        return lemmatizeAll(List.of(tokens)).get(0);
+    }
+
+    /**
+     * Lemmatizes the tokens of several documents. The words of all documents, which are not cached yet, are
+     * annotated together in one call of the pipeline, so a batch of documents is faster than single documents.
+     *
+     * @param documents  the tokens of the documents
+     *
+     * @return  the lemmatized tokens of every document, one lemma for every token.
+     */
+
+    public List<List<String>> lemmatizeAll(List<List<String>> documents) {
+        // Collects the words, which are not cached, per document and in the order they occur.
+        Map<String, String> lemmas = new HashMap<>();
+        List<List<String>> unknownWords = new ArrayList<>();
+
+        for (List<String> tokens : documents) {
+            List<String> words = new ArrayList<>();
+            for (String token : tokens) {
+                if (lemmas.containsKey(token)) {
+                    continue;
+                }
+                String lemma = segmentOf(token).get(token);
+                if (lemma != null) {
+                    cacheHits.increment();
+                } else {
+                    cacheMisses.increment();
+                    words.add(token);
+                }
+                lemmas.put(token, lemma);
+            }
+            if (!words.isEmpty()) {
+                unknownWords.add(words);
+            }
+        }
+
+        if (!unknownWords.isEmpty()) {
+            annotate(unknownWords, lemmas);
+        }
+
+        List<List<String>> lemmatizedDocuments = new ArrayList<>(documents.size());
+        for (List<String> tokens : documents) {
+            List<String> lemmatized = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                // A word, which CoreNLP didn`t return, is kept unchanged.
+                String lemma = lemmas.get(token);
+                lemmatized.add((lemma != null) ? lemma : token);
+            }
+            lemmatizedDocuments.add(lemmatized);
+        }
+        return lemmatizedDocuments;
+    }
+
+    /**
+     * Annotates the unknown words of every document as one line. The tokens are only split at whitespace
+     * and the sentences at line ends, so every word gets exactly one lemma.
+     */
 
-        Annotation document = new Annotation(String.join(" ", tokens));
-        
-        pipeline.annotate(document);
+    private void annotate(List<List<String>> unknownWords, Map<String, String> lemmas) {
+        StringBuilder text = new StringBuilder();
+        for (List<String> words : unknownWords) {
+            text.append(String.join(" ", words)).append('\n');
+        }
+        Annotation document = new Annotation(text.toString());
+
+        StanfordCoreNLP pipeline = borrowPipeline();
+        try {
+            pipeline.annotate(document);
+        } finally {
+            PIPELINES.add(pipeline);
+        }
+
+        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+            for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+                String word = token.word();
+                String lemma = token.get(CoreAnnotations.LemmaAnnotation.class).toLowerCase(Locale.ROOT);
+                // The first lemma of a word in the batch is used for all its occurrences.
+                if (lemmas.get(word) == null) {
+                    lemmas.put(word, lemma);
+                    segmentOf(word).put(word, lemma);
+                }
+            }
+        }
+    }
+
+    private Segment segmentOf(String word) {
+        int hash = word.hashCode() * 0x9E3779B9;
+        return cache[(hash >>> 24) & (cache.length - 1)];
+    }
+
+    /**
+     * Takes an unused pipeline from the pool. A new pipeline is created if all pipelines are in use and there are
+     * less than MAX_PIPELINES, otherwise the thread waits for a pipeline.
+     */
+
+    private static StanfordCoreNLP borrowPipeline() {
+        StanfordCoreNLP pipeline = PIPELINES.poll();
+        if (pipeline != null) {
+            return pipeline;
+        }
+        if (createdPipelines.getAndIncrement() < MAX_PIPELINES) {
+            try {
+                return createPipeline();
+            } catch (RuntimeException e) {
+                createdPipelines.decrementAndGet();
+                throw e;
+            }
+        }
+        createdPipelines.decrementAndGet();
+        try {
+            return PIPELINES.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a pipeline", e);
+        }
+    }
+
+    /**
+     * Creates a Stanford CoreNLP pipeline with the following necessary annotators:
+     * "tokenize" is used for splitting the text into tokens
+     * "ssplit" is used for sentece splitting
+     * "pos" is used for part-of-speech tagging
+     * "lemma" is used for lemmatization
+     */
+
+    private static StanfordCoreNLP createPipeline() {
+        Properties props = new Properties();
+        props.setProperty("annotators", "tokenize, ssplit, pos, lemma");
+        props.setProperty("tokenize.whitespace", "true");
+        props.setProperty("ssplit.eolonly", "true");
+        return new StanfordCoreNLP(props);
+    }
+
+    @Override
+    public List<String> normalize(List<String> tokens) {
+        return lemmatize(tokens);
+    }
+
+    @Override
+    public List<List<String>> normalizeAll(List<List<String>> documents) {
+        return lemmatizeAll(documents);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * @return  the number of cached words.
+     */
+
+    public int getCacheSize() {
+        int size = 0;
+        for (Segment segment : cache) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return  the number of words which were found in the cache.
+     */
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return  the number of words which were not found in the cache and were sent to CoreNLP.
+     */
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * A segment of the cache with its own lock. The words are kept in access order, so the least recently used
+     * word is evicted when the segment is full.
+     */
+
+    private static final class Segment {
+
+        private final Map<String, String> lemmas;
+
+        Segment(int capacity) {
+            this.lemmas = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized String get(String word) {
+            return lemmas.get(word);
+        }
+
+        synchronized void put(String word, String lemma) {
+            lemmas.putIfAbsent(word, lemma);
+        }
 
-        for (CoreLabel token : document.get(CoreAnnotations.TokensAnnotation.class)) {
-            String lemma = token.get(CoreAnnotations.LemmaAnnotation.class);
-            lemmas.add(lemma);
+        synchronized int size() {
+            return lemmas.size();
         }
-        
-        return lemmas;
     }
 }
@@ -0,0 +1,148 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "LinkGraph" stores the link structure of the crawled pages with integer page ids.
+ * The inbound links are stored in the compressed sparse row (CSR) format: The sources of the links to page i are
+ * stored in inSources[inOffsets[i]] to inSources[inOffsets[i + 1] - 1], sorted by their page id.
+ * The outgoing links are stored in the same way in outOffsets and outTargets.
+ */
+
+public final class LinkGraph {
+
+    private final String[] urls;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] outDegrees;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+
+    private LinkGraph(String[] urls, int[] inOffsets, int[] inSources, int[] outDegrees, int[] outOffsets, int[] outTargets) {
+        this.urls = urls;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.outDegrees = outDegrees;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+    }
+
+    /**
+     * Builds the graph from the crawled pages. The position of a page in the list is its page id.
+     * Links to pages which are not in the list are ignored.
+     *
+     * @param pages  the crawled pages
+     *
+     * @return  the link graph of the pages.
+     */
+
+    public static LinkGraph fromPages(List<PageData> pages) {
+        int pageCount = pages.size();
+        String[] urls = new String[pageCount];
+        Map<String, Integer> ids = new HashMap<>();
+
+        for (int i = 0; i < pageCount; i++) {
+            urls[i] = pages.get(i).getURL();
+            ids.put(urls[i], i);
+        }
+
+        // Translate the links into page ids once and count the in- and outgoing links of each page.
+        int[][] targets = new int[pageCount][];
+        int[] outDegrees = new int[pageCount];
+        int[] inOffsets = new int[pageCount + 1];
+
+        for (int i = 0; i < pageCount; i++) {
+            Set<String> links = pages.get(i).getLinks();
+            int[] pageTargets = new int[links.size()];
+            int count = 0;
+
+            for (String link : links) {
+                Integer target = ids.get(link);
+                if (target != null) {
+                    pageTargets[count++] = target;
+                    inOffsets[target + 1]++;
+                }
+            }
+            targets[i] = Arrays.copyOf(pageTargets, count);
+            outDegrees[i] = count;
+        }
+
+        for (int i = 0; i < pageCount; i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+
+        // The sources are filled in ascending order, so every row is sorted.
+        int[] inSources = new int[inOffsets[pageCount]];
+        int[] position = Arrays.copyOf(inOffsets, pageCount);
+
+        for (int source = 0; source < pageCount; source++) {
+            for (int target : targets[source]) {
+                inSources[position[target]++] = source;
+            }
+        }
+
+        int[] outOffsets = new int[pageCount + 1];
+        int[] outTargets = new int[inSources.length];
+        for (int source = 0; source < pageCount; source++) {
+            outOffsets[source + 1] = outOffsets[source] + outDegrees[source];
+            System.arraycopy(targets[source], 0, outTargets, outOffsets[source], outDegrees[source]);
+        }
+        return new LinkGraph(urls, inOffsets, inSources, outDegrees, outOffsets, outTargets);
+    }
+
+    /**
+     * @return  the number of pages in the graph.
+     */
+
+    public int size() {
+        return urls.length;
+    }
+
+    /**
+     * @return  the number of links between the pages of the graph.
+     */
+
+    public int linkCount() {
+        return inSources.length;
+    }
+
+    /**
+     * @param page  the page id
+     *
+     * @return  the url of the page.
+     */
+
+    public String getURL(int page) {
+        return urls[page];
+    }
+
+    /**
+     * @param page  the page id
+     *
+     * @return  the number of links from the page to other pages of the graph.
+     */
+
+    public int getOutDegree(int page) {
+        return outDegrees[page];
+    }
+
+    int[] inOffsets() {
+        return inOffsets;
+    }
+
+    int[] inSources() {
+        return inSources;
+    }
+
+    int[] outDegrees() {
+        return outDegrees;
+    }
+
+    int[] outOffsets() {
+        return outOffsets;
+    }
+
+    int[] outTargets() {
+        return outTargets;
+    }
+}
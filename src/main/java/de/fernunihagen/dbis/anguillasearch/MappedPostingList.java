@@ -0,0 +1,111 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The class "MappedPostingList" reads the postings of a token directly from a memory-mapped index segment.
+ * The Document-IDs and the TF-IDF-scores are stored like in a {@link PostingList} as an int array followed by
+ * a float array, but they are never copied to the heap. Only absolute reads are used on the shared buffer,
+ * so any number of cursors can read the same buffer at the same time.
+ */
+
+final class MappedPostingList implements Postings {
+
+    private final ByteBuffer buffer;
+    private final int docIDOffset;
+    private final int weightOffset;
+    private final int size;
+    private final float maxWeight;
+
+    /**
+     * Creates a posting list, which reads its postings from a buffer.
+     *
+     * @param buffer  the buffer of the segment
+     * @param offset  the position of the first Document-ID in the buffer
+     * @param size  the number of postings
+     * @param maxWeight  the highest TF-IDF-score of the postings
+     */
+
+    MappedPostingList(ByteBuffer buffer, int offset, int size, float maxWeight) {
+        this.buffer = buffer;
+        this.docIDOffset = offset;
+        this.weightOffset = offset + Integer.BYTES * size;
+        this.size = size;
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double maxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public PostingCursor cursor() {
+        return new Cursor();
+    }
+
+    private int docIDAt(int index) {
+        return buffer.getInt(docIDOffset + Integer.BYTES * index);
+    }
+
+    /**
+     * Cursor over the mapped postings. advance() searches the remaining postings binary.
+     */
+
+    private final class Cursor implements PostingCursor {
+
+        private int index = -1;
+        private int docID = -1;
+
+        @Override
+        public int docID() {
+            return docID;
+        }
+
+        @Override
+        public double weight() {
+            return buffer.getFloat(weightOffset + Float.BYTES * index);
+        }
+
+        @Override
+        public int next() {
+            if (index < size) {
+                index++;
+            }
+            docID = (index < size) ? docIDAt(index) : NO_MORE_DOCS;
+            return docID;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docID >= target) {
+                return docID;
+            }
+            int low = Math.max(index, 0);
+            int high = size;
+
+            // Finds the first posting whose Document-ID is not smaller than the target.
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (docIDAt(middle) < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            index = low;
+            docID = (index < size) ? docIDAt(index) : NO_MORE_DOCS;
+            return docID;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -10,13 +10,36 @@ public class PageData {
     private String title;
     private String header;
     private String content;
-    private String docID; 
+    private int docID = -1; 
     private String url; 
     private double pageRank = 0.0;
     private double score; 
     private List<String> tokens = new ArrayList<>();
     private Set<String> links = new HashSet<>();
     private Map <String, Double> tfIdfVektor = new HashMap<>();
+
+    public PageData() {
+    }
+
+    /** 
+     * Creates a copy of a page. The copy shares the tokens, links and TF-IDF-scores of the page, 
+     * which are not changed after the page was crawled.
+     * 
+     * @param page  the page to copy
+     */
+
+    public PageData(PageData page) {
+        this.title = page.title;
+        this.header = page.header;
+        this.content = page.content;
+        this.docID = page.docID;
+        this.url = page.url;
+        this.pageRank = page.pageRank;
+        this.score = page.score;
+        this.tokens = page.tokens;
+        this.links = page.links;
+        this.tfIdfVektor = page.tfIdfVektor;
+    }
  
     public void setTitle(String title) {
         this.title = title;
@@ -42,11 +65,11 @@ public class PageData {
         return content;
     }
 
-    public void setID(String docID) {
+    public void setID(int docID) {
         this.docID = docID;
     }
 
-    public String getID() {
+    public int getID() {
         return docID;
     }
 
@@ -18,6 +18,12 @@ public class PageRank {
     private static final double EPSILON = 0.0001;
     private static final double DAMPING_FACTOR = 0.85;
     private final Crawler crawler;
+    // Pages which were already crawled. If this list is null, the pages are crawled in calculate().
+    private final List<PageData> pages;
+    // Statistics of the last calculation.
+    private int iterations;
+    private double residual;
+    private long pushes;
 
     /** 
      * A public constructor, used for initializing the JSON-Object and create an new instance of a Crawler object.
@@ -26,62 +32,133 @@ public class PageRank {
     public PageRank(JsonObject jsonFilePath) {
         this.jsonFilePath = jsonFilePath;
         this.crawler = new Crawler();
+        this.pages = null;
+    }
+
+    /**
+     * Creates a PageRank calculation for pages which were already crawled, so no new crawl is started.
+     * 
+     * @param pages  the crawled pages of the intranet
+     */
+
+    public PageRank(List<PageData> pages) {
+        this.jsonFilePath = null;
+        this.crawler = null;
+        this.pages = pages;
     }
 
     /** 
      * Algorithm to calculate the PageRank scores for all fetched pages. It uses the 
-     * damping factor and iterates until the PageRank values converge.
+     * damping factor and iterates until the PageRank values converge. The iteration runs on a
+     * LinkGraph with integer page ids, so every iteration only walks over the links once.
      * 
      * @throws IOException  if there is an error during the crawling.
      */
 
     public void calculate() throws IOException {
-        crawler.crawl(jsonFilePath);
-        int crawledPages = crawler.getCrawledPages().size();
+        calculate(1, null);
+    }
+
+    /** 
+     * Calculates the PageRank scores like {@link #calculate()}, but starts from the scores of an earlier calculation
+     * instead of the uniform distribution. Pages without an earlier score start with 1 / number of pages.
+     * The scores are updated with {@link PageRankEngine#calculateIncremental(double[])}, so after a re-crawl, which
+     * changed only a few links, mostly the pages around the changed links are visited.
+     * 
+     * @param previousScores  the PageRank table of the earlier calculation
+     * 
+     * @throws IOException  if there is an error during the crawling.
+     */
+
+    public void calculate(PageRankTable previousScores) throws IOException {
+        calculate(1, previousScores);
+    }
+
+    /** 
+     * Calculates the PageRank scores like {@link #calculate()}, but every iteration is split over several threads.
+     * The result is always the same for the same number of threads.
+     * 
+     * @param threads  the number of threads used for the iterations
+     * 
+     * @throws IOException  if there is an error during the crawling.
+     */
+
+    public void calculateParallel(int threads) throws IOException {
+        calculate(threads, null);
+    }
+
+    private void calculate(int threads, PageRankTable previousScores) throws IOException {
+        List<PageData> allPages = pages;
 
-        if (crawler.getCrawledPages().isEmpty()) {
+        if (allPages == null) {
+            crawler.crawl(jsonFilePath);
+            allPages = crawler.getCrawledPages();
+        }
+
+        if (allPages.isEmpty()) {
             return;
         }
 
-        // Initialize the PageRank values for all pages.
-        double initialRank = 1.0 / crawledPages;
-
-        for (PageData page : crawler.getCrawledPages()) {
-            pageRankValues.put(page.getURL(), initialRank);
-            page.setPageRank(initialRank);
-        }  
-
-        boolean converged = false; 
-
-        // Iterates until the difference between the new and the old PageRank score converge. 
-        while(!converged) {
-            double rankDifferenz = 0.0;
-            Map<String, Double> pageRankAktualisiert = new HashMap<>();
-
-            for (PageData page : crawler.getCrawledPages()) {
-                String url = page.getURL();
-                double newRank = 0.0;
-
-                // Calculate the contribution of each linking page.
-                for (PageData otherPage : crawler.getCrawledPages()) {
-                    if (otherPage.getLinks().contains(url)) {
-                        String linkingURL = otherPage.getURL();
-                        double linkingRank = pageRankValues.get(linkingURL);
-                        int outgoingLinks = otherPage.getLinks().size();
-
-                        newRank += linkingRank / outgoingLinks;
-                    }
-                }
-               
-                newRank = (DAMPING_FACTOR * newRank) + ((1 - DAMPING_FACTOR) / crawledPages);
-                
-                pageRankAktualisiert.put(url, newRank);
-                rankDifferenz += Math.abs(newRank - pageRankValues.get(url));
+        LinkGraph graph = LinkGraph.fromPages(allPages);
+        PageRankEngine engine = new PageRankEngine(graph, DAMPING_FACTOR, EPSILON);
+        double[] ranks;
+
+        if (previousScores != null && !previousScores.isEmpty()) {
+            double[] initialRanks = new double[graph.size()];
+            for (int i = 0; i < initialRanks.length; i++) {
+                double previous = previousScores.getScore(graph.getURL(i));
+                initialRanks[i] = (previous > 0.0) ? previous : 1.0 / graph.size();
             }
+            ranks = engine.calculateIncremental(initialRanks);
+        } else {
+            ranks = engine.calculateParallel(threads);
+        }
+        iterations = engine.getIterations();
+        residual = engine.getResidual();
+        pushes = engine.getPushes();
+
+        // Store the PageRank values for each url. The pages are not changed, because they may already be published
+        // and read by other threads. The Crawler publishes copies of the pages with their new PageRank.
+        Map<String, Double> pageRankAktualisiert = new HashMap<>();
 
-            // Update the PageRank values and heck for convergence
-            pageRankValues = pageRankAktualisiert;
-            converged = rankDifferenz < EPSILON;
+        for (int i = 0; i < ranks.length; i++) {
+            pageRankAktualisiert.put(graph.getURL(i), ranks[i]);
         }
+        pageRankValues = pageRankAktualisiert;
+    }
+
+    /**
+     * Returns the calculated PageRank scores as an immutable table, which can be shared by all search queries.
+     * 
+     * @return  the PageRank table of the last calculation.
+     */
+
+    public PageRankTable getPageRankTable() {
+        return new PageRankTable(pageRankValues);
+    }
+
+    /**
+     * @return  the number of iterations of the last calculation, for an update from earlier scores the number of
+     *          sweeps over all links.
+     */
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return  the sum of all rank changes in the last iteration of the last calculation.
+     */
+
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * @return  the number of local updates of the last calculation, which started from earlier scores.
+     */
+
+    public long getPushes() {
+        return pushes;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,373 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The class "PageRankEngine" calculates the PageRank with the power iteration on a LinkGraph.
+ * The scores are stored in primitive arrays and every iteration only walks over the inbound links once,
+ * so the time of an iteration is proportional to the number of links.
+ * The rank of dangling pages (pages without outgoing links) is distributed evenly over all pages,
+ * so the sum of all scores stays 1.
+ * After a small change of the link graph, {@link #calculateIncremental(double[])} only updates the pages
+ * around the changed links, starting from the earlier scores.
+ */
+
+public class PageRankEngine {
+
+    private static final int BLOCKS_PER_THREAD = 4;
+    // Maximum number of push rounds of an incremental update, before it continues with the power iteration.
+    private static final int MAX_PUSH_ROUNDS = 64;
+
+    private final LinkGraph graph;
+    private final double dampingFactor;
+    private final double epsilon;
+    private int maxPushRounds = MAX_PUSH_ROUNDS;
+
+    private int iterations;
+    private double residual;
+    private long pushes;
+
+    /**
+     * Creates a new engine for a link graph.
+     *
+     * @param graph  the link graph of the pages
+     * @param dampingFactor  the probability to follow a link
+     * @param epsilon  the iteration stops when the sum of all rank changes is smaller than this value
+     */
+
+    public PageRankEngine(LinkGraph graph, double dampingFactor, double epsilon) {
+        this.graph = graph;
+        this.dampingFactor = dampingFactor;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Calculates the PageRank of all pages, starting from the uniform distribution.
+     *
+     * @return  the PageRank scores, indexed by the page id.
+     */
+
+    public double[] calculate() {
+        return iterate(1, null, null);
+    }
+
+    /**
+     * Calculates the PageRank of all pages, starting from given scores, for example the scores of an earlier
+     * calculation. If the link graph changed only a little, far fewer iterations are needed than from the uniform
+     * distribution. The scores are scaled to the sum 1 before the first iteration.
+     *
+     * @param initialRanks  the scores to start from, indexed by the page id, or null for the uniform distribution
+     *
+     * @return  the PageRank scores, indexed by the page id.
+     */
+
+    public double[] calculate(double[] initialRanks) {
+        return iterate(1, null, initialRanks);
+    }
+
+    /**
+     * Updates earlier PageRank scores after a change of the link graph with a local push method instead of the
+     * power iteration. One sweep over all links computes the residual of every page, which is the difference between
+     * its score and the score after one more iteration. Then only pages with a large residual push it to their score
+     * and pass the damped part on to the pages they link to, so the work stays around the changed links. After every
+     * round of pushes the sum of the residuals is computed again from the residuals of the pages, so rounding errors
+     * don`t add up, and the update stops when it is smaller than epsilon, which is the same condition as in
+     * {@link #calculate()}. If the sum is still too large after 64 rounds, the update continues with the power
+     * iteration from the pushed scores, so it always ends.
+     *
+     * @param previousRanks  the earlier scores, indexed by the page id. They are scaled to the sum 1 first.
+     *
+     * @return  the PageRank scores, indexed by the page id.
+     */
+
+    public double[] calculateIncremental(double[] previousRanks) {
+        int pageCount = graph.size();
+        iterations = 0;
+        residual = 0.0;
+        pushes = 0;
+
+        if (pageCount == 0) {
+            return new double[0];
+        }
+
+        double[] ranks = initialRanks(pageCount, previousRanks);
+        double[] residuals = new double[pageCount];
+        double[] contributions = new double[pageCount];
+
+        int[] outOffsets = graph.outOffsets();
+        int[] outTargets = graph.outTargets();
+        int[] outDegrees = graph.outDegrees();
+
+        // One sweep computes the exact residuals of the earlier scores.
+        computeResiduals(ranks, contributions, residuals);
+        iterations = 1;
+        // The residual, which dangling pages passed on to every page.
+        double uniformResidual = 0.0;
+
+        // The threshold starts high, so at first only pages near the changed links push, and sinks whenever the
+        // queue runs empty before epsilon is reached. Below epsilon / pageCount the sum can`t be above epsilon.
+        double threshold = epsilon * (1 - dampingFactor) * 4;
+        // Every page is at most once in the queue, so a ring buffer of the number of pages is enough.
+        int[] queue = new int[pageCount];
+        boolean[] queued = new boolean[pageCount];
+
+        for (int round = 0; ; round++) {
+            // The residual of the dangling pages is added and the sum is computed again after every round.
+            residual = 0.0;
+            for (int page = 0; page < pageCount; page++) {
+                residuals[page] += uniformResidual;
+                residual += Math.abs(residuals[page]);
+            }
+            uniformResidual = 0.0;
+            if (residual < epsilon) {
+                return ranks;
+            }
+            if (round == maxPushRounds) {
+                long pushCount = pushes;
+                double[] result = iterate(1, null, ranks);
+                iterations++;
+                pushes = pushCount;
+                return result;
+            }
+
+            int head = 0;
+            int queueSize = 0;
+            for (int page = 0; page < pageCount; page++) {
+                if (Math.abs(residuals[page]) >= threshold) {
+                    queue[queueSize++] = page;
+                    queued[page] = true;
+                }
+            }
+            threshold = Math.max(threshold / 4, epsilon / pageCount);
+
+            while (queueSize > 0) {
+                int page = queue[head];
+                head = (head + 1) % pageCount;
+                queueSize--;
+                queued[page] = false;
+
+                double push = residuals[page];
+                ranks[page] += push;
+                residuals[page] = 0.0;
+                pushes++;
+
+                if (outDegrees[page] == 0) {
+                    uniformResidual += dampingFactor * push / pageCount;
+                    continue;
+                }
+                double share = dampingFactor * push / outDegrees[page];
+                for (int i = outOffsets[page]; i < outOffsets[page + 1]; i++) {
+                    int target = outTargets[i];
+                    residuals[target] += share;
+
+                    if (!queued[target] && Math.abs(residuals[target]) >= threshold) {
+                        queue[(head + queueSize) % pageCount] = target;
+                        queueSize++;
+                        queued[target] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of push rounds of {@link #calculateIncremental(double[])}. Only used by the tests.
+     *
+     * @param maxPushRounds  the maximum number of rounds
+     */
+
+    void setMaxPushRounds(int maxPushRounds) {
+        this.maxPushRounds = maxPushRounds;
+    }
+
+    /**
+     * Computes the residual of every page: the score after one iteration of the power method minus its current score.
+     */
+
+    private void computeResiduals(double[] ranks, double[] contributions, double[] residuals) {
+        int pageCount = ranks.length;
+        int[] inOffsets = graph.inOffsets();
+        int[] inSources = graph.inSources();
+        int[] outDegrees = graph.outDegrees();
+
+        double danglingRank = 0.0;
+        for (int page = 0; page < pageCount; page++) {
+            if (outDegrees[page] == 0) {
+                danglingRank += ranks[page];
+                contributions[page] = 0.0;
+            } else {
+                contributions[page] = ranks[page] / outDegrees[page];
+            }
+        }
+        double base = (1 - dampingFactor) / pageCount + dampingFactor * danglingRank / pageCount;
+
+        for (int page = 0; page < pageCount; page++) {
+            double linkSum = 0.0;
+            for (int i = inOffsets[page]; i < inOffsets[page + 1]; i++) {
+                linkSum += contributions[inSources[i]];
+            }
+            residuals[page] = base + dampingFactor * linkSum - ranks[page];
+        }
+    }
+
+    /**
+     * Calculates the PageRank of all pages like {@link #calculate()}, but the pages of every iteration are split into
+     * blocks, which are processed in parallel. The partial sums of the blocks are added in a fixed order, so the
+     * result is always the same for the same number of threads.
+     *
+     * @param threads  the number of threads
+     *
+     * @return  the PageRank scores, indexed by the page id.
+     */
+
+    public double[] calculateParallel(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        }
+        if (threads == 1) {
+            return calculate();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // More blocks than threads, so the work is balanced if the blocks contain a different number of links.
+            return iterate(threads * BLOCKS_PER_THREAD, pool, null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private double[] iterate(int blockCount, ForkJoinPool pool, double[] initialRanks) {
+        int pageCount = graph.size();
+        iterations = 0;
+        residual = 0.0;
+        pushes = 0;
+
+        if (pageCount == 0) {
+            return new double[0];
+        }
+
+        double[] ranks = initialRanks(pageCount, initialRanks);
+        double[] newRanks = new double[pageCount];
+        double[] contributions = new double[pageCount];
+
+        int[] inOffsets = graph.inOffsets();
+        int[] inSources = graph.inSources();
+        int[] outDegrees = graph.outDegrees();
+
+        // Block b contains the pages from blockStart[b] to blockStart[b + 1] - 1.
+        blockCount = Math.min(blockCount, pageCount);
+        int[] blockStart = new int[blockCount + 1];
+        for (int b = 0; b <= blockCount; b++) {
+            blockStart[b] = (int) ((long) pageCount * b / blockCount);
+        }
+        double[] blockDangling = new double[blockCount];
+        double[] blockDifferenz = new double[blockCount];
+
+        do {
+            double[] oldRanks = ranks;
+            double[] nextRanks = newRanks;
+
+            // The rank of every page is split over its outgoing links, the rank of dangling pages over all pages.
+            runBlocks(pool, blockCount, b -> {
+                double danglingRank = 0.0;
+                for (int page = blockStart[b]; page < blockStart[b + 1]; page++) {
+                    if (outDegrees[page] == 0) {
+                        danglingRank += oldRanks[page];
+                        contributions[page] = 0.0;
+                    } else {
+                        contributions[page] = oldRanks[page] / outDegrees[page];
+                    }
+                }
+                blockDangling[b] = danglingRank;
+            });
+            double danglingRank = sumInOrder(blockDangling);
+            double base = (1 - dampingFactor) / pageCount + dampingFactor * danglingRank / pageCount;
+
+            runBlocks(pool, blockCount, b -> {
+                double rankDifferenz = 0.0;
+                for (int page = blockStart[b]; page < blockStart[b + 1]; page++) {
+                    double sum = 0.0;
+                    for (int i = inOffsets[page]; i < inOffsets[page + 1]; i++) {
+                        sum += contributions[inSources[i]];
+                    }
+                    nextRanks[page] = base + dampingFactor * sum;
+                    rankDifferenz += Math.abs(nextRanks[page] - oldRanks[page]);
+                }
+                blockDifferenz[b] = rankDifferenz;
+            });
+
+            ranks = nextRanks;
+            newRanks = oldRanks;
+
+            residual = sumInOrder(blockDifferenz);
+            iterations++;
+        } while (residual >= epsilon);
+
+        return ranks;
+    }
+
+    private static double[] initialRanks(int pageCount, double[] initialRanks) {
+        double[] ranks = new double[pageCount];
+
+        if (initialRanks == null) {
+            Arrays.fill(ranks, 1.0 / pageCount);
+            return ranks;
+        }
+        if (initialRanks.length != pageCount) {
+            throw new IllegalArgumentException("There must be an initial score for every page");
+        }
+
+        double sum = sumInOrder(initialRanks);
+        for (int page = 0; page < pageCount; page++) {
+            ranks[page] = (sum > 0.0) ? initialRanks[page] / sum : 1.0 / pageCount;
+        }
+        return ranks;
+    }
+
+    private static void runBlocks(ForkJoinPool pool, int blockCount, IntConsumer block) {
+        if (pool == null) {
+            for (int b = 0; b < blockCount; b++) {
+                block.accept(b);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, blockCount).parallel().forEach(block)).join();
+        }
+    }
+
+    private static double sumInOrder(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * @return  the number of iterations of the last calculation. For {@link #calculateIncremental(double[])}
+     *          the number of sweeps over all links, which is 1 unless the push rounds ran out.
+     */
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return  the sum of all rank changes in the last iteration of the last calculation.
+     */
+
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * @return  the number of pages, which pushed their residual in the last incremental calculation.
+     */
+
+    public long getPushes() {
+        return pushes;
+    }
+}
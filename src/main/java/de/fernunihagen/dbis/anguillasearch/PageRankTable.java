@@ -0,0 +1,119 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "PageRankTable" is an immutable snapshot of the PageRank scores of an intranet.
+ * It is calculated once while the index is built and can be shared by every search query,
+ * because its content never changes after construction. A table which belongs to a DocumentRegistry
+ * also stores the scores in an array indexed by the Document-ID.
+ */
+
+public final class PageRankTable {
+
+    // Table without any scores, used as long as no PageRank has been published.
+    public static final PageRankTable EMPTY = new PageRankTable(Map.of());
+
+    // Map from the url of a page to its PageRank score.
+    private final Map<String, Double> scores;
+    // The registry of the Document-IDs and the scores indexed by the Document-ID, or null if the table has no registry.
+    private final DocumentRegistry documents;
+    private final double[] scoresByDocID;
+    // The highest score of the table, used as upper bound by the search.
+    private final double maxScore;
+
+    /**
+     * Creates a new table from the given PageRank scores. The scores are copied, so later changes
+     * to the given map don`t affect the table.
+     *
+     * @param scores  a map of urls to their PageRank scores
+     */
+
+    public PageRankTable(Map<String, Double> scores) {
+        this(Map.copyOf(scores), null, new double[0]);
+    }
+
+    private PageRankTable(Map<String, Double> scores, DocumentRegistry documents, double[] scoresByDocID) {
+        this.scores = scores;
+        this.documents = documents;
+        this.scoresByDocID = scoresByDocID;
+
+        double max = 0.0;
+        for (double score : scores.values()) {
+            max = Math.max(max, score);
+        }
+        this.maxScore = max;
+    }
+
+    /**
+     * Returns a table with the same scores, which can be read by the Document-IDs of the given registry.
+     *
+     * @param documents  the registry of the Document-IDs
+     *
+     * @return  this table if it already belongs to the registry, else a new table.
+     */
+
+    public PageRankTable forDocuments(DocumentRegistry documents) {
+        if (this.documents == documents) {
+            return this;
+        }
+        double[] byDocID = new double[documents.size()];
+
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            int docID = documents.getDocID(entry.getKey());
+            if (docID >= 0 && docID < byDocID.length) {
+                byDocID[docID] = entry.getValue();
+            }
+        }
+        return new PageRankTable(scores, documents, byDocID);
+    }
+
+    /**
+     * Returns the PageRank score of a page by its Document-ID. The table has to belong to the registry
+     * of the Document-ID, see {@link #forDocuments(DocumentRegistry)}.
+     *
+     * @param docID  the Document-ID of the page
+     *
+     * @return  the PageRank score or 0.0 if the page is unknown.
+     */
+
+    public double getScore(int docID) {
+        return (docID >= 0 && docID < scoresByDocID.length) ? scoresByDocID[docID] : 0.0;
+    }
+
+    /**
+     * Returns the PageRank score of a page.
+     *
+     * @param url  the url of the page
+     *
+     * @return  the PageRank score or 0.0 if the page is unknown.
+     */
+
+    public double getScore(String url) {
+        return scores.getOrDefault(url, 0.0);
+    }
+
+    /**
+     * @return  the highest PageRank score of the table.
+     */
+
+    public double getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * @return  all PageRank scores as an unmodifiable map.
+     */
+
+    public Map<String, Double> getScores() {
+        return scores;
+    }
+
+    /**
+     * @return  true if the table doesn`t contain any scores.
+     */
+
+    public boolean isEmpty() {
+        return scores.isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import org.jsoup.Connection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The class "PageVersion" remembers which version of a page was fetched: the ETag and Last-Modified headers of the
+ * response and a hash of its content. A re-crawl sends them as conditional request, so the server can answer with
+ * "304 Not Modified" instead of the whole page. Servers without these headers are detected by the content hash.
+ */
+
+public final class PageVersion {
+
+    private static final int NOT_MODIFIED = 304;
+
+    private final String etag;
+    private final String lastModified;
+    private final byte[] contentHash;
+
+    private PageVersion(String etag, String lastModified, byte[] contentHash) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Creates the version of a fetched page. The body of the response is read, but can still be parsed afterwards.
+     *
+     * @param response  the response of the page
+     *
+     * @return  the version of the page.
+     */
+
+    public static PageVersion of(Connection.Response response) {
+        return new PageVersion(response.header("ETag"), response.header("Last-Modified"), hash(response.bodyAsBytes()));
+    }
+
+    /**
+     * Adds the headers of a conditional request for this version to a connection.
+     *
+     * @param connection  the connection to the page
+     *
+     * @return  the connection.
+     */
+
+    public Connection applyTo(Connection connection) {
+        if (etag != null) {
+            connection.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.header("If-Modified-Since", lastModified);
+        }
+        return connection;
+    }
+
+    /**
+     * @param response  the response of a conditional request
+     *
+     * @return  true if the server answered that the page was not modified.
+     */
+
+    public static boolean isNotModified(Connection.Response response) {
+        return response.statusCode() == NOT_MODIFIED;
+    }
+
+    /**
+     * @param other  another version of the page
+     *
+     * @return  true if both versions have the same content.
+     */
+
+    public boolean hasSameContent(PageVersion other) {
+        return MessageDigest.isEqual(contentHash, other.contentHash);
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
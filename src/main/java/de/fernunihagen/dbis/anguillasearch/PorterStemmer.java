@@ -0,0 +1,435 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "PorterStemmer" reduces english words to their stem with the rules of the Porter algorithm
+ * (M.F. Porter, "An algorithm for suffix stripping", 1980). For example: The words "connected", "connecting" and
+ * "connection" are reduced into "connect". Unlike the {@link Lemmatizer} it needs no dictionary and no
+ * part-of-speech tagger, so it is much faster and needs no memory, but the stems are not always real words.
+ * The suffixes are removed in a reused char array, so only the changed tokens create a new String.
+ * A stemmer has no state and can be shared by all threads.
+ */
+
+public class PorterStemmer implements TokenNormalizer {
+
+    static final String NAME = "porter";
+
+    /**
+     * Reduces the tokens to their stems.
+     *
+     * @param tokens  the lower case tokens
+     *
+     * @return  the stems of the tokens.
+     */
+
+    @Override
+    public List<String> normalize(List<String> tokens) {
+        Word word = new Word();
+        List<String> stems = new ArrayList<>(tokens.size());
+
+        for (String token : tokens) {
+            stems.add(word.stem(token));
+        }
+        return stems;
+    }
+
+    /**
+     * Reduces a word to its stem.
+     *
+     * @param token  the lower case word
+     *
+     * @return  the stem of the word.
+     */
+
+    public String stem(String token) {
+        return new Word().stem(token);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * The word which is stemmed right now. The characters of the word are b[0] to b[k] and j marks the end of
+     * the stem, if the word ends with the suffix which was checked last. The steps of the algorithm only shorten
+     * the word or replace characters, so the word never gets longer than the token.
+     */
+
+    private static final class Word {
+
+        private char[] b = new char[32];
+        private int k;
+        private int j;
+
+        private String stem(String token) {
+            int length = token.length();
+            // Words with one or two letters are not stemmed.
+            if (length <= 2) {
+                return token;
+            }
+            if (length > b.length) {
+                b = new char[Math.max(length, b.length * 2)];
+            }
+            token.getChars(0, length, b, 0);
+            k = length - 1;
+
+            step1ab();
+            step1c();
+            step2();
+            step3();
+            step4();
+            step5();
+
+            return isUnchanged(token) ? token : new String(b, 0, k + 1);
+        }
+
+        private boolean isUnchanged(String token) {
+            if (k + 1 != token.length()) {
+                return false;
+            }
+            for (int i = k; i >= 0; i--) {
+                if (b[i] != token.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Whether b[i] is a consonant. The letter y is a consonant at the start of the word or after a vowel.
+        private boolean cons(int i) {
+            switch (b[i]) {
+                case 'a', 'e', 'i', 'o', 'u':
+                    return false;
+                case 'y':
+                    return (i == 0) || !cons(i - 1);
+                default:
+                    return true;
+            }
+        }
+
+        /*
+         * Measures the number of consonant sequences between 0 and j. If c is a consonant sequence and v a vowel
+         * sequence, every word has the form [c](vc){m}[v] and m() returns m:
+         * <c><v> gives 0, <c>vc<v> gives 1, <c>vcvc<v> gives 2 and so on.
+         */
+
+        private int m() {
+            int n = 0;
+            int i = 0;
+            while (true) {
+                if (i > j) {
+                    return n;
+                }
+                if (!cons(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+            while (true) {
+                while (true) {
+                    if (i > j) {
+                        return n;
+                    }
+                    if (cons(i)) {
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                n++;
+                while (true) {
+                    if (i > j) {
+                        return n;
+                    }
+                    if (!cons(i)) {
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+            }
+        }
+
+        // Whether the stem b[0] to b[j] contains a vowel.
+        private boolean vowelInStem() {
+            for (int i = 0; i <= j; i++) {
+                if (!cons(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Whether b[i - 1] and b[i] are the same consonant.
+        private boolean doubleConsonant(int i) {
+            return i >= 1 && b[i] == b[i - 1] && cons(i);
+        }
+
+        /*
+         * Whether b[i - 2] to b[i] has the form consonant - vowel - consonant and the last consonant is not w, x or y.
+         * This is used to restore an e at the end of short words, for example "hop(e)" or "fil(e)".
+         */
+
+        private boolean cvc(int i) {
+            if (i < 2 || !cons(i) || cons(i - 1) || !cons(i - 2)) {
+                return false;
+            }
+            char c = b[i];
+            return c != 'w' && c != 'x' && c != 'y';
+        }
+
+        // Whether the word ends with the suffix. If so, j is set to the end of the stem.
+        private boolean ends(String suffix) {
+            int length = suffix.length();
+            int offset = k - length + 1;
+            if (offset < 0) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (b[offset + i] != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+            j = k - length;
+            return true;
+        }
+
+        // Replaces the characters after j with the replacement.
+        private void setTo(String replacement) {
+            int length = replacement.length();
+            replacement.getChars(0, length, b, j + 1);
+            k = j + length;
+        }
+
+        private void replace(String replacement) {
+            if (m() > 0) {
+                setTo(replacement);
+            }
+        }
+
+        /*
+         * Removes plurals and -ed or -ing, for example:
+         * caresses -> caress, ponies -> poni, cats -> cat, feed -> feed, agreed -> agree, plastered -> plaster,
+         * motoring -> motor, sing -> sing, conflated -> conflate, hopping -> hop, filing -> file.
+         */
+
+        private void step1ab() {
+            if (b[k] == 's') {
+                if (ends("sses")) {
+                    k -= 2;
+                } else if (ends("ies")) {
+                    setTo("i");
+                } else if (b[k - 1] != 's') {
+                    k--;
+                }
+            }
+            if (ends("eed")) {
+                if (m() > 0) {
+                    k--;
+                }
+            } else if ((ends("ed") || ends("ing")) && vowelInStem()) {
+                k = j;
+                if (ends("at")) {
+                    setTo("ate");
+                } else if (ends("bl")) {
+                    setTo("ble");
+                } else if (ends("iz")) {
+                    setTo("ize");
+                } else if (doubleConsonant(k)) {
+                    char c = b[k];
+                    if (c != 'l' && c != 's' && c != 'z') {
+                        k--;
+                    }
+                } else if (m() == 1 && cvc(k)) {
+                    j = k;
+                    setTo("e");
+                }
+            }
+        }
+
+        // Turns a terminal y into i if there is another vowel in the stem, for example happy -> happi.
+        private void step1c() {
+            if (ends("y") && vowelInStem()) {
+                b[k] = 'i';
+            }
+        }
+
+        // Maps double suffixes to single ones, for example -ization (-ize + -ation) -> -ize.
+        private void step2() {
+            if (k == 0) {
+                return;
+            }
+            switch (b[k - 1]) {
+                case 'a':
+                    if (ends("ational")) {
+                        replace("ate");
+                    } else if (ends("tional")) {
+                        replace("tion");
+                    }
+                    break;
+                case 'c':
+                    if (ends("enci")) {
+                        replace("ence");
+                    } else if (ends("anci")) {
+                        replace("ance");
+                    }
+                    break;
+                case 'e':
+                    if (ends("izer")) {
+                        replace("ize");
+                    }
+                    break;
+                case 'l':
+                    if (ends("bli")) {
+                        replace("ble");
+                    } else if (ends("alli")) {
+                        replace("al");
+                    } else if (ends("entli")) {
+                        replace("ent");
+                    } else if (ends("eli")) {
+                        replace("e");
+                    } else if (ends("ousli")) {
+                        replace("ous");
+                    }
+                    break;
+                case 'o':
+                    if (ends("ization")) {
+                        replace("ize");
+                    } else if (ends("ation") || ends("ator")) {
+                        replace("ate");
+                    }
+                    break;
+                case 's':
+                    if (ends("alism")) {
+                        replace("al");
+                    } else if (ends("iveness")) {
+                        replace("ive");
+                    } else if (ends("fulness")) {
+                        replace("ful");
+                    } else if (ends("ousness")) {
+                        replace("ous");
+                    }
+                    break;
+                case 't':
+                    if (ends("aliti")) {
+                        replace("al");
+                    } else if (ends("iviti")) {
+                        replace("ive");
+                    } else if (ends("biliti")) {
+                        replace("ble");
+                    }
+                    break;
+                case 'g':
+                    if (ends("logi")) {
+                        replace("log");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Handles -ic-, -full, -ness and similar suffixes.
+        private void step3() {
+            switch (b[k]) {
+                case 'e':
+                    if (ends("icate")) {
+                        replace("ic");
+                    } else if (ends("ative")) {
+                        replace("");
+                    } else if (ends("alize")) {
+                        replace("al");
+                    }
+                    break;
+                case 'i':
+                    if (ends("iciti")) {
+                        replace("ic");
+                    }
+                    break;
+                case 'l':
+                    if (ends("ical")) {
+                        replace("ic");
+                    } else if (ends("ful")) {
+                        replace("");
+                    }
+                    break;
+                case 's':
+                    if (ends("ness")) {
+                        replace("");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Removes -ant, -ence and similar suffixes if the remaining stem has a measure greater than 1.
+        private void step4() {
+            if (k == 0) {
+                return;
+            }
+            boolean suffix;
+            switch (b[k - 1]) {
+                case 'a':
+                    suffix = ends("al");
+                    break;
+                case 'c':
+                    suffix = ends("ance") || ends("ence");
+                    break;
+                case 'e':
+                    suffix = ends("er");
+                    break;
+                case 'i':
+                    suffix = ends("ic");
+                    break;
+                case 'l':
+                    suffix = ends("able") || ends("ible");
+                    break;
+                case 'n':
+                    suffix = ends("ant") || ends("ement") || ends("ment") || ends("ent");
+                    break;
+                case 'o':
+                    suffix = (ends("ion") && j >= 0 && (b[j] == 's' || b[j] == 't')) || ends("ou");
+                    break;
+                case 's':
+                    suffix = ends("ism");
+                    break;
+                case 't':
+                    suffix = ends("ate") || ends("iti");
+                    break;
+                case 'u':
+                    suffix = ends("ous");
+                    break;
+                case 'v':
+                    suffix = ends("ive");
+                    break;
+                case 'z':
+                    suffix = ends("ize");
+                    break;
+                default:
+                    suffix = false;
+                    break;
+            }
+            if (suffix && m() > 1) {
+                k = j;
+            }
+        }
+
+        // Removes a final -e if the measure is greater than 1 and changes -ll to -l if the measure is greater than 1.
+        private void step5() {
+            j = k;
+            if (b[k] == 'e') {
+                int measure = m();
+                if (measure > 1 || measure == 1 && !cvc(k - 1)) {
+                    k--;
+                }
+            }
+            if (b[k] == 'l' && doubleConsonant(k) && m() > 1) {
+                k--;
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class "PostingBlockCache" keeps decoded blocks of compressed posting lists, so the blocks of frequent query
+ * tokens are not decoded again by every query. A block is identified by the Term-ID and its number in the list.
+ * The cache is limited by the bytes of the decoded Document-IDs and TF-IDF-scores. It evicts the least recently
+ * used block, but a block is only admitted if it was requested before and more often than the block it would evict
+ * (TinyLFU), so a query for a rare token with a long posting list reads through the cache without replacing the
+ * blocks of the frequent tokens. A cached block is never changed and is read by the cursors without copying it.
+ *
+ * <p>Large caches are split into up to 16 segments by the key of the blocks. Every segment has its own lock, its own
+ * share of the bytes, its own LRU order and its own frequency sketch, so concurrent queries rarely wait for each
+ * other. Every segment holds at least 64 blocks, so small caches have a single segment. The counters are not locked.
+ */
+
+public final class PostingBlockCache {
+
+    // Estimated bytes of the objects of a cached block besides its arrays.
+    private static final int ENTRY_OVERHEAD = 96;
+    // Estimated bytes of a full block, used to size the segments and the frequency sketches.
+    private static final int BLOCK_BYTES = ENTRY_OVERHEAD + CompressedPostingList.BLOCK_SIZE * (Integer.BYTES + Float.BYTES);
+    // Number of requests a block needs before it is admitted.
+    private static final int ADMISSION_FREQUENCY = 2;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_BLOCKS = 64;
+
+    private final long maxBytes;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxBytes  the maximum size of the cached blocks in bytes
+     */
+
+    public PostingBlockCache(long maxBytes) {
+        if (maxBytes < BLOCK_BYTES) {
+            throw new IllegalArgumentException("The cache must have room for at least one block");
+        }
+        this.maxBytes = maxBytes;
+
+        long segmentCount = Math.min(MAX_SEGMENTS, Math.max(1, maxBytes / BLOCK_BYTES / MIN_SEGMENT_BLOCKS));
+        this.segments = new Segment[Integer.highestOneBit((int) segmentCount)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(maxBytes / segments.length);
+        }
+    }
+
+    /**
+     * Returns a decoded block.
+     *
+     * @param termID  the Term-ID of the posting list
+     * @param block  the number of the block
+     * @param owner  the encoded postings the block must be decoded from, so blocks of older posting lists of
+     *               the same token are not used
+     *
+     * @return  the block or null if it is not cached.
+     */
+
+    Block get(int termID, int block, Object owner) {
+        long key = key(termID, block);
+        int hash = hash(key);
+        Block cached = segmentOf(hash).get(key, hash, owner);
+
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Offers a decoded block to the cache. The arrays are only copied if the block is admitted.
+     *
+     * @param termID  the Term-ID of the posting list
+     * @param block  the number of the block
+     * @param owner  the encoded postings the block was decoded from
+     * @param docIDs  the decoded Document-IDs
+     * @param weights  the decoded TF-IDF-scores
+     * @param count  the number of postings of the block
+     */
+
+    void put(int termID, int block, Object owner, int[] docIDs, float[] weights, int count) {
+        long key = key(termID, block);
+        int hash = hash(key);
+        segmentOf(hash).put(key, hash, owner, docIDs, weights, count);
+    }
+
+    private static long key(int termID, int block) {
+        return ((long) termID << 32) | (block & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        return Long.hashCode(key * 0x9E3779B97F4A7C15L);
+    }
+
+    private Segment segmentOf(int hash) {
+        // The upper bits select the segment, the sketch of the segment mixes all bits again.
+        return segments[(hash >>> 24) & (segments.length - 1)];
+    }
+
+    /**
+     * @return  the number of cached blocks.
+     */
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return  the bytes of the cached blocks.
+     */
+
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return  the maximum bytes of the cached blocks.
+     */
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return  the number of segments, which are locked separately.
+     */
+
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * @return  the number of blocks which were read from the cache.
+     */
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return  the number of blocks which had to be decoded.
+     */
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return  the number of cached blocks which were evicted for more frequent blocks.
+     */
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return  the number of decoded blocks which were not admitted, because they were not requested often enough.
+     */
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * A part of the cache with its own lock. All methods are synchronized.
+     */
+
+    private final class Segment {
+
+        private final long maxBytes;
+        // The cached blocks in the order of their last use, the least recently used first.
+        private final LinkedHashMap<Long, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch frequencies;
+        private long bytes = 0;
+
+        private Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+            this.frequencies = new FrequencySketch((int) Math.min(maxBytes / BLOCK_BYTES, Integer.MAX_VALUE));
+        }
+
+        private synchronized Block get(long key, int hash, Object owner) {
+            frequencies.increment(hash);
+            Block cached = blocks.get(key);
+            return (cached != null && cached.owner == owner) ? cached : null;
+        }
+
+        private synchronized void put(long key, int hash, Object owner, int[] docIDs, float[] weights, int count) {
+            int frequency = frequencies.frequency(hash);
+            long size = ENTRY_OVERHEAD + (long) count * (Integer.BYTES + Float.BYTES);
+
+            if (frequency < ADMISSION_FREQUENCY) {
+                rejections.increment();
+                return;
+            }
+            // A block of an older posting list of the same token is replaced. A block of the same list was already
+            // added by a concurrent cursor.
+            Block old = blocks.remove(key);
+            if (old != null && old.owner == owner) {
+                blocks.put(key, old);
+                return;
+            }
+            long oldSize = (old != null) ? old.size : 0;
+
+            // All victims are checked before any of them is evicted, so a rejected block leaves the segment unchanged.
+            long neededBytes = bytes - oldSize + size - maxBytes;
+            long freedBytes = 0;
+            int victims = 0;
+            Iterator<Map.Entry<Long, Block>> iterator = blocks.entrySet().iterator();
+            while (freedBytes < neededBytes) {
+                Map.Entry<Long, Block> victim = iterator.hasNext() ? iterator.next() : null;
+                if (victim == null || frequency <= frequencies.frequency(hash(victim.getKey()))) {
+                    if (old != null) {
+                        blocks.put(key, old);
+                    }
+                    rejections.increment();
+                    return;
+                }
+                freedBytes += victim.getValue().size;
+                victims++;
+            }
+
+            iterator = blocks.entrySet().iterator();
+            for (int i = 0; i < victims; i++) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+            bytes -= oldSize + freedBytes;
+            blocks.put(key, new Block(owner, Arrays.copyOf(docIDs, count), Arrays.copyOf(weights, count), size));
+            bytes += size;
+        }
+
+        private synchronized int size() {
+            return blocks.size();
+        }
+
+        private synchronized long getSizeInBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * A decoded block. The arrays have exactly one element per posting.
+     */
+
+    static final class Block {
+
+        private final Object owner;
+        final int[] docIDs;
+        final float[] weights;
+        private final long size;
+
+        private Block(Object owner, int[] docIDs, float[] weights, long size) {
+            this.owner = owner;
+            this.docIDs = docIDs;
+            this.weights = weights;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The interface "PostingCursor" iterates over the postings of a token in ascending order of the Document-IDs.
+ * A new cursor is positioned before the first posting, so next() or advance() has to be called first.
+ */
+
+public interface PostingCursor {
+
+    // Document-ID returned when the cursor has passed the last posting.
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * @return  the Document-ID of the current posting, -1 before the first call of next() or advance()
+     *          and NO_MORE_DOCS after the last posting.
+     */
+
+    int docID();
+
+    /**
+     * @return  the TF-IDF-score of the current posting.
+     */
+
+    double weight();
+
+    /**
+     * Moves the cursor to the next posting.
+     *
+     * @return  the Document-ID of the next posting or NO_MORE_DOCS.
+     */
+
+    int next();
+
+    /**
+     * Moves the cursor to the first posting with a Document-ID greater than or equal to the target.
+     * The cursor never moves backwards.
+     *
+     * @param target  the Document-ID to move to
+     *
+     * @return  the Document-ID of the new posting or NO_MORE_DOCS.
+     */
+
+    int advance(int target);
+
+    /**
+     * @return  the total number of postings of the cursor.
+     */
+
+    int size();
+}
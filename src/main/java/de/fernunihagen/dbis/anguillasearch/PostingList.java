@@ -0,0 +1,173 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "PostingList" is the compact, immutable form of the postings of a token. The Document-IDs are stored
+ * sorted in a primitive int array and the TF-IDF-scores in a parallel float array, so a posting only needs 8 bytes
+ * and the postings are read sequentially from memory.
+ */
+
+public final class PostingList implements Postings {
+
+    // Posting list without any postings, used for unknown tokens.
+    public static final PostingList EMPTY = new PostingList(new int[0], new float[0]);
+
+    private final int[] docIDs;
+    private final float[] weights;
+    private final float maxWeight;
+
+    /**
+     * Creates a posting list from sorted arrays. The arrays are not copied, so they must not be changed afterwards.
+     *
+     * @param docIDs  the Document-IDs in ascending order
+     * @param weights  the TF-IDF-scores of the documents
+     */
+
+    public PostingList(int[] docIDs, float[] weights) {
+        if (docIDs.length != weights.length) {
+            throw new IllegalArgumentException("The Document-IDs and the weights must have the same length");
+        }
+        this.docIDs = docIDs;
+        this.weights = weights;
+
+        float max = 0.0f;
+        for (float weight : weights) {
+            max = Math.max(max, weight);
+        }
+        this.maxWeight = max;
+    }
+
+    /**
+     * Creates the compact posting list from the postings collected while building the index.
+     *
+     * @param postings  the collected postings
+     *
+     * @return  the posting list.
+     */
+
+    static PostingList from(PostingsBuilder postings) {
+        if (postings.size() == 0) {
+            return EMPTY;
+        }
+        int[] docIDs = new int[postings.size()];
+        float[] weights = new float[postings.size()];
+
+        for (int i = 0; i < docIDs.length; i++) {
+            docIDs[i] = postings.docID(i);
+            weights[i] = (float) postings.value(i);
+        }
+        return new PostingList(docIDs, weights);
+    }
+
+    /**
+     * @return  the number of postings.
+     */
+
+    @Override
+    public int size() {
+        return docIDs.length;
+    }
+
+    /**
+     * @param index  the position of the posting
+     *
+     * @return  the Document-ID of the posting.
+     */
+
+    public int docID(int index) {
+        return docIDs[index];
+    }
+
+    /**
+     * @param index  the position of the posting
+     *
+     * @return  the TF-IDF-score of the posting.
+     */
+
+    public double weight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * @return  the highest TF-IDF-score of all postings.
+     */
+
+    @Override
+    public double maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return  a new cursor over the postings.
+     */
+
+    @Override
+    public PostingCursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Cursor over the arrays of the posting list. advance() uses an exponential search starting at the current
+     * position, so skipping a few postings is cheap and skipping many postings needs only logarithmic time.
+     */
+
+    private final class Cursor implements PostingCursor {
+
+        private int index = -1;
+
+        @Override
+        public int docID() {
+            if (index < 0) {
+                return -1;
+            }
+            return (index < docIDs.length) ? docIDs[index] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public double weight() {
+            return weights[index];
+        }
+
+        @Override
+        public int next() {
+            if (index < docIDs.length) {
+                index++;
+            }
+            return docID();
+        }
+
+        @Override
+        public int advance(int target) {
+            int start = Math.max(index, 0);
+            if (start >= docIDs.length) {
+                index = docIDs.length;
+                return NO_MORE_DOCS;
+            }
+            if (docIDs[start] >= target) {
+                index = start;
+                return docIDs[start];
+            }
+
+            // Double the step until the target is passed, then search the last interval binary.
+            int low = start;
+            int step = 1;
+            int high = start + step;
+            while (high < docIDs.length && docIDs[high] < target) {
+                low = high;
+                step <<= 1;
+                high = start + step;
+            }
+            high = Math.min(high, docIDs.length - 1);
+
+            int found = Arrays.binarySearch(docIDs, low + 1, high + 1, target);
+            index = (found >= 0) ? found : -(found + 1);
+            return docID();
+        }
+
+        @Override
+        public int size() {
+            return docIDs.length;
+        }
+    }
+}
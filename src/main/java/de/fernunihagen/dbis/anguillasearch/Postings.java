@@ -0,0 +1,27 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The interface "Postings" is implemented by every storage format of the postings of a token.
+ * The search only reads the postings through cursors, so the formats can be exchanged.
+ */
+
+public interface Postings {
+
+    /**
+     * @return  the number of postings.
+     */
+
+    int size();
+
+    /**
+     * @return  the highest TF-IDF-score of all postings.
+     */
+
+    double maxWeight();
+
+    /**
+     * @return  a new cursor over the postings.
+     */
+
+    PostingCursor cursor();
+}
@@ -0,0 +1,108 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "PostingsBuilder" collects the postings of one token while the index is built. The Document-IDs are
+ * kept sorted in a primitive array with a parallel array of values (TF-IDF-scores or raw term frequencies).
+ * Documents are usually added in ascending order, so a new posting is normally just appended.
+ */
+
+final class PostingsBuilder {
+
+    private int[] docIDs = new int[4];
+    private double[] values = new double[4];
+    private int size = 0;
+
+    /**
+     * Sets the value of a document. An existing value of the document is replaced.
+     *
+     * @param docID  the Document-ID
+     * @param value  the value
+     */
+
+    void put(int docID, double value) {
+        int index = insertionPoint(docID);
+        values[index] = value;
+    }
+
+    /**
+     * Adds a value to the value of a document. A missing document starts with 0.
+     *
+     * @param docID  the Document-ID
+     * @param value  the value to add
+     */
+
+    void add(int docID, double value) {
+        int index = insertionPoint(docID);
+        values[index] += value;
+    }
+
+    /**
+     * Removes the posting of a document.
+     *
+     * @param docID  the Document-ID
+     *
+     * @return  true if the document had a posting.
+     */
+
+    boolean remove(int docID) {
+        int index = Arrays.binarySearch(docIDs, 0, size, docID);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(docIDs, index + 1, docIDs, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the position of the document in the postings or a negative number if it has no posting.
+     */
+
+    int indexOf(int docID) {
+        return Arrays.binarySearch(docIDs, 0, size, docID);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int docID(int index) {
+        return docIDs[index];
+    }
+
+    double value(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the position of a document and inserts a posting with the value 0 if it is missing.
+     */
+
+    private int insertionPoint(int docID) {
+        if (size > 0 && docIDs[size - 1] == docID) {
+            return size - 1;
+        }
+
+        int index = (size == 0 || docIDs[size - 1] < docID) ? -(size + 1) : Arrays.binarySearch(docIDs, 0, size, docID);
+        if (index >= 0) {
+            return index;
+        }
+        index = -(index + 1);
+
+        if (size == docIDs.length) {
+            docIDs = Arrays.copyOf(docIDs, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(docIDs, index, docIDs, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        docIDs[index] = docID;
+        values[index] = 0.0;
+        size++;
+        return index;
+    }
+}
@@ -0,0 +1,339 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The class "QueryCache" keeps the results of recent search queries, so a repeated query is answered without
+ * reading any posting list. A query is identified by its normalized tokens, the ranking mode and k, so queries which
+ * only differ in the case or in stopwords share their results. Every result belongs to the snapshot it was computed
+ * from: when a new snapshot (with new posting lists or a new PageRank table) is published, all results are dropped.
+ *
+ * <p>The cache holds at most "capacity" queries. It evicts the least recently used query, but a new query is only
+ * admitted if it was requested more often than the query it would evict (TinyLFU). The frequencies are counted for
+ * all requested queries in a small count-min sketch, so a burst of one-time queries can`t evict the popular ones.
+ *
+ * <p>A lookup reads a ConcurrentHashMap and takes no lock, so concurrent queries don`t wait for each other on a hit.
+ * The LRU order and the sketch are guarded by a lock. Every lookup records its key in one of several small ring
+ * buffers with a single compare-and-set, which are applied in a batch when a query is added or a buffer is full.
+ * If a buffer is full or another thread wins the compare-and-set, the request is not recorded, so under heavy load
+ * the LRU order and the frequencies are approximate.
+ */
+
+public final class QueryCache {
+
+    // Results with more documents are not cached, so a query for all documents can`t fill the memory.
+    static final int MAX_CACHED_RESULTS = 1000;
+    // Number and size of the read buffers. The threads are spread over the buffers by their id.
+    private static final int READ_BUFFERS = 16;
+    private static final int READ_BUFFER_SIZE = 64;
+
+    private final int capacity;
+    // The cached results, which are read without a lock.
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    // The keys in the order of their last use, the least recently used first. Guarded by the lock.
+    private final LinkedHashMap<Key, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+    // Guarded by the lock.
+    private final FrequencySketch frequencies;
+    // Requested keys, which are not yet applied to the LRU order and the sketch.
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFERS];
+    private final ReentrantLock lock = new ReentrantLock();
+    // Generation of the snapshot of the cached results. Only changed while holding the lock.
+    private volatile long generation = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity  the maximum number of cached queries
+     */
+
+    public QueryCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.frequencies = new FrequencySketch(capacity);
+        for (int i = 0; i < READ_BUFFERS; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * Returns the cached results of a query.
+     *
+     * @param tokens  the normalized tokens of the query
+     * @param useCosineSimilarity  whether the query uses the Cosine Similarity
+     * @param k  the maximum number of results
+     * @param snapshotGeneration  the generation of the snapshot the results must belong to
+     *
+     * @return  the unmodifiable results or null if they are not cached.
+     */
+
+    public List<Map.Entry<String, Double>> get(List<String> tokens, boolean useCosineSimilarity, int k,
+            long snapshotGeneration) {
+        Key key = new Key(tokens, useCosineSimilarity, k);
+        if (snapshotGeneration > generation) {
+            lock.lock();
+            try {
+                switchGeneration(snapshotGeneration);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Entry entry = entries.get(key);
+        recordRequest(key);
+        if (entry != null && entry.generation == snapshotGeneration) {
+            hits.increment();
+            return entry.results;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the results of a query. Results of an older snapshot than the cached ones are ignored.
+     *
+     * @param tokens  the normalized tokens of the query
+     * @param useCosineSimilarity  whether the query uses the Cosine Similarity
+     * @param k  the maximum number of results
+     * @param snapshotGeneration  the generation of the snapshot the results were computed from
+     * @param results  the unmodifiable results
+     */
+
+    public void put(List<String> tokens, boolean useCosineSimilarity, int k, long snapshotGeneration,
+            List<Map.Entry<String, Double>> results) {
+        if (results.size() > MAX_CACHED_RESULTS) {
+            return;
+        }
+        Key key = new Key(List.copyOf(tokens), useCosineSimilarity, k);
+
+        lock.lock();
+        try {
+            switchGeneration(snapshotGeneration);
+            if (generation != snapshotGeneration) {
+                return;
+            }
+            // The frequencies must be up to date for the admission.
+            drainReadBuffers();
+
+            if (entries.size() >= capacity && !entries.containsKey(key)) {
+                Key victim = order.keySet().iterator().next();
+                // The new query must be more frequent than the least recently used query.
+                if (frequencies.frequency(key.hash) <= frequencies.frequency(victim.hash)) {
+                    return;
+                }
+                order.remove(victim);
+                entries.remove(victim);
+                evictions.increment();
+            }
+            entries.put(key, new Entry(results, snapshotGeneration));
+            order.put(key, Boolean.TRUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all cached results, for example because the search was configured differently.
+     */
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            order.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the cached results if they belong to an older snapshot than the requested one.
+     * Only called while holding the lock.
+     */
+
+    private void switchGeneration(long snapshotGeneration) {
+        if (snapshotGeneration > generation) {
+            entries.clear();
+            order.clear();
+            generation = snapshotGeneration;
+        }
+    }
+
+    /**
+     * Records a request in the read buffer of the current thread. A full buffer is applied if the lock is free.
+     */
+
+    private void recordRequest(Key key) {
+        int index = (int) Thread.currentThread().getId() & (READ_BUFFERS - 1);
+        if (readBuffers[index].offer(key) == ReadBuffer.FULL && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies the recorded requests to the LRU order and the sketch. Only called while holding the lock.
+     */
+
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            Key key;
+            while ((key = buffer.poll()) != null) {
+                frequencies.increment(key.hash);
+                // Moves a cached key to the end of the LRU order.
+                order.get(key);
+            }
+        }
+    }
+
+    /**
+     * @return  the number of cached queries.
+     */
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return  the maximum number of cached queries.
+     */
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return  the number of queries which were answered from the cache.
+     */
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return  the number of queries which were not found in the cache.
+     */
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return  the number of cached queries which were evicted for more frequent queries.
+     */
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * A ring buffer of requested keys without a lock. The writers reserve a slot with a compare-and-set on the tail
+     * and drop the key if the buffer is full or another writer was faster. Only the owner of the cache lock reads.
+     */
+
+    private static final class ReadBuffer {
+
+        private static final int ADDED = 0;
+        private static final int FULL = 1;
+        private static final int FAILED = 2;
+        private static final int MASK = READ_BUFFER_SIZE - 1;
+
+        private final AtomicReferenceArray<Key> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        // Number of reserved slots.
+        private final AtomicLong tail = new AtomicLong();
+        // Number of read slots. Only changed while holding the cache lock.
+        private volatile long head;
+
+        int offer(Key key) {
+            long t = tail.get();
+            if (t - head >= READ_BUFFER_SIZE) {
+                return FULL;
+            }
+            if (!tail.compareAndSet(t, t + 1)) {
+                return FAILED;
+            }
+            slots.lazySet((int) t & MASK, key);
+            return ADDED;
+        }
+
+        /**
+         * @return  the next recorded key or null if the buffer is empty or the next slot is not written yet.
+         */
+
+        Key poll() {
+            long h = head;
+            if (h == tail.get()) {
+                return null;
+            }
+            int index = (int) h & MASK;
+            Key key = slots.get(index);
+            if (key != null) {
+                slots.lazySet(index, null);
+                head = h + 1;
+            }
+            return key;
+        }
+    }
+
+    /**
+     * The cached results of a query and the generation of their snapshot.
+     */
+
+    private static final class Entry {
+
+        private final List<Map.Entry<String, Double>> results;
+        private final long generation;
+
+        private Entry(List<Map.Entry<String, Double>> results, long generation) {
+            this.results = results;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * The key of a cached query. Its hash is computed once, because it is needed for the map and the sketch.
+     */
+
+    private static final class Key {
+
+        private final List<String> tokens;
+        private final boolean useCosineSimilarity;
+        private final int k;
+        private final int hash;
+
+        private Key(List<String> tokens, boolean useCosineSimilarity, int k) {
+            this.tokens = tokens;
+            this.useCosineSimilarity = useCosineSimilarity;
+            this.k = k;
+            this.hash = 31 * (31 * tokens.hashCode() + Boolean.hashCode(useCosineSimilarity)) + k;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && k == key.k && useCosineSimilarity == key.useCosineSimilarity
+                && tokens.equals(key.tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
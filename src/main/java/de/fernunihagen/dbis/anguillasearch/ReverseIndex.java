@@ -2,6 +2,9 @@ package de.fernunihagen.dbis.anguillasearch;
  
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,57 +12,400 @@ import org.slf4j.LoggerFactory;
 /**
  * The class "ReverseIndex" implements a datastructure, which recieves a user input as a String and 
  * crawls the intranet and returns an Array of urls (Document-IDs from the urls) as a result.  
+ * Tokens and documents are added to the collected postings, but the search only reads the last published
+ * {@link IndexSnapshot}. A new snapshot is published by {@link #refresh()} or {@link #publishPageRank(PageRankTable)}
+ * and replaces the old one atomically, so search queries from any number of threads never take a lock.
  */
   
 public class ReverseIndex {
 
     /*
-     * This Map represents the Reverse-Index. The outer-map uses the Token (String) as the key and another inner-map as the Value.
-     * The inner-map uses the Document-ID (String) as the key and the TF-IDF-score from the Token as a value (Double)-
+     * This List represents the Reverse-Index. The postings of the token with the Term-ID t are stored at position t.
+     * The postings contain the sorted Document-IDs of the documents with the token and the TF-IDF-score of the token in each document.
      */ 
 
-    private Map<String, Map<String, Double>> reversedIndex = new HashMap<>();
+    private final List<PostingsBuilder> reversedIndex = new ArrayList<>();
+
+    // The published state of the index, which is read by the search. It is replaced as a whole, but never changed.
+    private final AtomicReference<IndexSnapshot> snapshot = new AtomicReference<>(IndexSnapshot.EMPTY);
+    // Whether tokens or documents were changed since the last published snapshot.
+    private volatile boolean changed = false;
+    // Whether the posting lists are stored compressed.
+    private volatile boolean compressPostings = false;
+    // Default size of the cache of decoded blocks of compressed posting lists.
+    private static final long DEFAULT_BLOCK_CACHE_BYTES = 16L * 1024 * 1024;
+    private long blockCacheBytes = DEFAULT_BLOCK_CACHE_BYTES;
+    // Cache of the decoded blocks of compressed posting lists. It only exists while the posting lists are compressed.
+    private volatile PostingBlockCache blockCache;
+
+    // Registries which map the urls and tokens to the integer ids used in the index.
+    private final DocumentRegistry documents;
+    private final TermDictionary terms;
+    // Whether the posting lists were loaded finished, so there are no collected postings to rebuild them from.
+    private final boolean readOnly;
+
+    // Unused search contexts with their score accumulators and query arrays. A query borrows a context and returns it,
+    // so the contexts are reused by all queries, even if every query runs on a new virtual thread.
+    private final Queue<SearchContext> searchContexts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledContexts = new AtomicInteger();
+
+    // Stored fields of the documents, which are published with the next snapshot. Guarded by the lock of the index.
+    private DocumentStore documentStore = DocumentStore.EMPTY;
+
+    // Raw term statistics of the streaming mode. If they are set, the TF-IDF-scores are calculated when they are requested.
+    private volatile TermStatistics termStatistics;
 
     private static final Logger logger = LoggerFactory.getLogger(ReverseIndex.class);
 
+    // Lock of the lazy PageRank calculation of searchQuery(String, boolean, JsonObject). It isn`t the lock of the index,
+    // so the index can be changed and published while the PageRank is calculated.
+    private final Object pageRankLock = new Object();
+    // Whether a PageRank table was published or the lazy calculation was tried, even if the table is empty.
+    private volatile boolean pageRankCalculated = false;
+
+    // Weight of the PageRank in the combined score of the Cosine Similarity search.
+    private static final double PAGERANK_FACTOR = 0.75;
+
+    // Maximum number of unused search contexts, which are kept for the next queries.
+    private static final int MAX_POOLED_CONTEXTS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    // Tokenizers with their reused buffers, one per thread, because the pages are tokenized by many crawler threads.
+    private static final ThreadLocal<Tokenizer> TOKENIZERS = ThreadLocal.withInitial(Tokenizer::new);
+
+    // Whether the search skips documents which can`t get into the results, see WandQueryProcessor.
+    private volatile boolean dynamicPruning = true;
+
+    // Optional normalization of the tokens of documents and queries, null if the tokens are not normalized.
+    private volatile TokenNormalizer normalizer;
+
+    // Default number of queries whose results are cached.
+    private static final int DEFAULT_QUERY_CACHE_SIZE = 1024;
+    // Results of recent search queries, null if the results are not cached.
+    private volatile QueryCache queryCache = new QueryCache(DEFAULT_QUERY_CACHE_SIZE);
+
+    /** 
+     * Creates an empty Reverse Index with its own document registry and term dictionary.
+     */
+
+    public ReverseIndex() {
+        this(new DocumentRegistry(), new TermDictionary());
+    }
+
+    /** 
+     * Creates an empty Reverse Index, which uses the given registries for the integer ids.
+     * 
+     * @param documents  the registry of the Document-IDs
+     * @param terms  the dictionary of the Term-IDs
+     */
+
+    public ReverseIndex(DocumentRegistry documents, TermDictionary terms) {
+        this.documents = documents;
+        this.terms = terms;
+        this.readOnly = false;
+    }
+
+    /** 
+     * Creates a Reverse Index from finished posting lists, for example from an index segment. 
+     * The index can be searched, but no tokens or documents can be added.
+     * 
+     * @param documents  the registry of the Document-IDs
+     * @param terms  the dictionary of the Term-IDs
+     * @param postingLists  the posting lists indexed by the Term-ID
+     */
+
+    ReverseIndex(DocumentRegistry documents, TermDictionary terms, Postings[] postingLists) {
+        this.documents = documents;
+        this.terms = terms;
+        this.snapshot.set(IndexSnapshot.EMPTY.withPostingLists(postingLists, documents.size()));
+        this.readOnly = true;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("The index was created from finished posting lists and can`t be changed");
+        }
+    }
+
     /**  
-     * Adds a token to the Reverse Index.
+     * Adds a token to the Reverse Index. The token can be found after the next published snapshot.
      * 
      * @param token  this token will be added to the reverse index.
-     * @param docID  the Document-ID in which the token appears 
+     * @param docID  the Document-ID (url) in which the token appears 
      * @param tfidf  The TF-IDF-score related to the token in the document.
      */ 
 
     public void addToken(String token, String docID, double tfidf) {
-        Map<String, Double> innerMap = reversedIndex.computeIfAbsent(token, k -> new HashMap<>());
+        addToken(terms.register(token), documents.register(docID), tfidf);
+    }
 
-        if (innerMap == null) {
-            innerMap = new HashMap<>();
-            reversedIndex.put(token, innerMap);
+    /**  
+     * Adds a token to the Reverse Index.
+     * 
+     * @param termID  the Term-ID of the token
+     * @param docID  the Document-ID in which the token appears 
+     * @param tfidf  The TF-IDF-score related to the token in the document.
+     */ 
+
+    public synchronized void addToken(int termID, int docID, double tfidf) {
+        checkWritable();
+        while (reversedIndex.size() <= termID) {
+            reversedIndex.add(new PostingsBuilder());
         }
-        innerMap.put(docID, tfidf);
+        reversedIndex.get(termID).put(docID, tfidf);
+        changed = true;
     }
 
     /** 
-     * Returns the full Reverse Index.
+     * Returns the full Reverse Index of the published snapshot. The map is created from the postings on every call.
      * 
-     * @return  The Reverse Index as a map of tokens to the document/tfidf mappings.
+     * @return  The Reverse Index as a map of tokens to the url/tfidf mappings.
      */
 
     public Map<String, Map<String, Double>> getReverseIndex() {
-        return reversedIndex;
+        Map<String, Map<String, Double>> index = new HashMap<>();
+        IndexSnapshot current = snapshot.get();
+
+        for (int termID = 0; termID < current.getTermCount(); termID++) {
+            Map<String, Double> tokenInfo = toUrlMap(current.getPostingList(termID));
+            if (!tokenInfo.isEmpty()) {
+                index.put(terms.getToken(termID), tokenInfo);
+            }
+        }
+        return index;
+    }
+
+    /** 
+     * Adds a document in the streaming mode. Only the raw term frequencies are stored, so the tokens of the document 
+     * don`t have to be kept. The document can be found by search queries after the next published snapshot.
+     * 
+     * @param docID  the Document-ID (url) of the document
+     * @param tokens  the tokens of the document
+     */
+
+    public void indexDocument(String docID, List<String> tokens) {
+        indexDocument(documents.register(docID), tokens);
+    }
+
+    /** 
+     * Adds a document in the streaming mode like {@link #indexDocument(String, List)}.
+     * 
+     * @param docID  the Document-ID of the document
+     * @param tokens  the tokens of the document
+     */
+
+    public void indexDocument(int docID, List<String> tokens) {
+        checkWritable();
+        TermStatistics statistics = termStatistics;
+
+        if (statistics == null) {
+            synchronized (this) {
+                if (termStatistics == null) {
+                    termStatistics = new TermStatistics();
+                }
+                statistics = termStatistics;
+            }
+        }
+
+        int[] termIDs = new int[tokens.size()];
+        for (int i = 0; i < termIDs.length; i++) {
+            termIDs[i] = terms.register(tokens.get(i));
+        }
+        statistics.addDocument(docID, termIDs);
+        changed = true;
+    }
+
+    /** 
+     * Removes a document in the streaming mode, for example because it was changed and is indexed again or because
+     * it doesn`t exist anymore. The document frequencies of its tokens are updated immediately, but the search finds
+     * the document until the next published snapshot.
+     * 
+     * @param docID  the Document-ID of the document
+     * 
+     * @return  true if the document was indexed.
+     */
+
+    public boolean removeDocument(int docID) {
+        checkWritable();
+        TermStatistics statistics = termStatistics;
+        if (statistics == null || !statistics.removeDocument(docID)) {
+            return false;
+        }
+        changed = true;
+        return true;
+    }
+
+    /** 
+     * @return  the raw term statistics of the streaming mode or null if the index was built with addToken().
+     */
+
+    public TermStatistics getTermStatistics() {
+        return termStatistics;
+    }
+
+    /** 
+     * @return  the registry of the Document-IDs used by this index.
+     */
+
+    public DocumentRegistry getDocuments() {
+        return documents;
+    }
+
+    /** 
+     * @return  the dictionary of the Term-IDs used by this index.
+     */
+
+    public TermDictionary getTerms() {
+        return terms;
     }
 
     /** 
-     * Returns the information for a specific token from the Reverse Index.
+     * Returns the information for a specific token from the published snapshot of the Reverse Index.
      * 
      * @param token  the specific token, from which the information is needed for.
      * 
-     * @return  a map of Document-IDs related to TF-IDF-scores for the given token.
+     * @return  a map of urls related to TF-IDF-scores for the given token.
      */
 
     public Map<String, Double> getTokenInfo(String token) {
-        return reversedIndex.getOrDefault(token, new HashMap<>());
+        return toUrlMap(getPostingList(terms.getTermID(token)));
+    }
+
+    /** 
+     * Enables or disables the compressed storage of the posting lists. Compressed posting lists need about half 
+     * of the memory, but the TF-IDF-scores are quantized to 16 bits. In the streaming mode the posting lists are 
+     * always calculated uncompressed. The setting is used by the next published snapshot.
+     * 
+     * @param compressPostings  true to store the posting lists compressed
+     */
+
+    public synchronized void setCompressPostings(boolean compressPostings) {
+        checkWritable();
+        this.compressPostings = compressPostings;
+        updateBlockCache();
+        changed = true;
+    }
+
+    /** 
+     * Sets the size of the cache of decoded blocks of compressed posting lists, see {@link PostingBlockCache}.
+     * The cache is only created while the posting lists are compressed (see {@link #setCompressPostings(boolean)}),
+     * because uncompressed and mapped posting lists are read without decoding. Otherwise the setting has no effect 
+     * until the compression is enabled. The setting is used by the next published snapshot.
+     * 
+     * @param maxBytes  the maximum size of the cached blocks in bytes or 0 to disable the cache
+     */
+
+    public synchronized void setPostingBlockCacheSize(long maxBytes) {
+        checkWritable();
+        blockCacheBytes = Math.max(0, maxBytes);
+        updateBlockCache();
+        changed = true;
+    }
+
+    private void updateBlockCache() {
+        PostingBlockCache cache = blockCache;
+        if (!compressPostings || blockCacheBytes == 0) {
+            blockCache = null;
+        } else if (cache == null || cache.getMaxBytes() != blockCacheBytes) {
+            blockCache = new PostingBlockCache(blockCacheBytes);
+        }
+    }
+
+    /** 
+     * @return  the cache of decoded blocks with its counters or null if the blocks are not cached, 
+     *          in particular if the posting lists are not compressed.
+     */
+
+    public PostingBlockCache getPostingBlockCache() {
+        return blockCache;
+    }
+
+    /** 
+     * Returns the posting list of a token from the published snapshot.
+     * 
+     * @param termID  the Term-ID of the token
+     * 
+     * @return  the posting list of the token, which is empty for an unknown token.
+     */
+
+    public Postings getPostingList(int termID) {
+        return snapshot.get().getPostingList(termID);
+    }
+
+    /** 
+     * @return  the published snapshot, which is read by the search.
+     */
+
+    public IndexSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /** 
+     * Publishes a new snapshot with the tokens and documents added so far and the current PageRank table.
+     * The search queries, which already started, finish on the old snapshot. If nothing changed, the snapshot is kept.
+     */
+
+    public synchronized void refresh() {
+        IndexSnapshot current = snapshot.get();
+        if (changed) {
+            snapshot.set(createSnapshot(current.getPageRankTable()));
+        } else if (current.getDocumentStore() != documentStore) {
+            snapshot.set(current.withPageRankTable(current.getPageRankTable(), documentStore));
+        }
+    }
+
+    /** 
+     * Sets the stored fields of the documents, which are published with the next snapshot, so the search results 
+     * and the titles of a search always belong to the same state of the index.
+     * 
+     * @param documentStore  the stored fields of the documents
+     */
+
+    public synchronized void setDocumentStore(DocumentStore documentStore) {
+        this.documentStore = documentStore;
+    }
+
+    /** 
+     * Creates a new snapshot from the collected postings or, in the streaming mode, from the term statistics.
+     * Only called while holding the lock of the index.
+     * 
+     * @param pageRanks  the PageRank table of the new snapshot
+     * 
+     * @return  the new snapshot.
+     */
+
+    private IndexSnapshot createSnapshot(PageRankTable pageRanks) {
+        changed = false;
+        TermStatistics statistics = termStatistics;
+        Postings[] lists;
+
+        if (statistics != null) {
+            lists = statistics.createPostingLists();
+        } else {
+            lists = new Postings[reversedIndex.size()];
+            for (int termID = 0; termID < lists.length; termID++) {
+                PostingList postingList = PostingList.from(reversedIndex.get(termID));
+                lists[termID] = compressPostings ? compress(postingList, termID) : postingList;
+            }
+        }
+        // The documents are counted after the postings, so every Document-ID of the postings is smaller.
+        int documentCount = documents.size();
+        long generation = snapshot.get().getGeneration() + 1;
+        return new IndexSnapshot(lists, pageRanks.forDocuments(documents), documentStore, documentCount, generation);
+    }
+
+    private CompressedPostingList compress(PostingList postingList, int termID) {
+        CompressedPostingList compressed = CompressedPostingList.compress(postingList);
+        PostingBlockCache cache = blockCache;
+        return (cache != null) ? compressed.withBlockCache(cache, termID) : compressed;
+    }
+
+    private Map<String, Double> toUrlMap(Postings postings) {
+        Map<String, Double> tokenInfo = new HashMap<>();
+        PostingCursor cursor = postings.cursor();
+
+        while (cursor.next() != PostingCursor.NO_MORE_DOCS) {
+            tokenInfo.put(documents.getURL(cursor.docID()), cursor.weight());
+        }
+        return tokenInfo;
     }
 
     /** 
@@ -71,13 +417,49 @@ public class ReverseIndex {
      */
 
     public List<String> tokenizeContent(String content) {
+        List<String> tokens = TOKENIZERS.get().tokenize(content);
+        TokenNormalizer currentNormalizer = normalizer;
+        return (currentNormalizer != null) ? currentNormalizer.normalize(tokens) : tokens;
+    }
 
-        List<String> tokens = Arrays.asList(content.toLowerCase().split("\\W+"));
+    /** 
+     * Tokenizes the contents of several documents like {@link #tokenizeContent(String)}. If the tokens are normalized,
+     * all documents are normalized in one batch.
+     * 
+     * @param contents  the contents which should be tokenized
+     * 
+     * @return  the tokens of every content.
+     */
 
-        // Removes predefined stopwords and return the filtered tokens.
-        return tokens.stream()
-                     .filter(token -> !Stopwords.ENGLISH_STOPWORDS.contains(token))
-                     .toList();
+    public List<List<String>> tokenizeContents(List<String> contents) {
+        Tokenizer tokenizer = TOKENIZERS.get();
+        List<List<String>> tokens = new ArrayList<>(contents.size());
+        for (String content : contents) {
+            tokens.add(tokenizer.tokenize(content));
+        }
+        TokenNormalizer currentNormalizer = normalizer;
+        return (currentNormalizer != null) ? currentNormalizer.normalizeAll(tokens) : tokens;
+    }
+
+    /** 
+     * Sets the normalizer of the tokens, for example a {@link PorterStemmer} or a {@link Lemmatizer}. The same
+     * normalizer must be used for indexing the documents and for the search, because the search only finds
+     * normalized query tokens in a normalized index. It is stored with the index by {@link IndexSegment}.
+     * 
+     * @param normalizer  the normalizer or null to keep the tokens unchanged
+     */
+
+    public void setNormalizer(TokenNormalizer normalizer) {
+        this.normalizer = normalizer;
+        clearQueryCache();
+    }
+
+    /** 
+     * @return  the normalizer of the tokens or null if the tokens are not normalized.
+     */
+
+    public TokenNormalizer getNormalizer() {
+        return normalizer;
     }
 
     /** 
@@ -90,12 +472,17 @@ public class ReverseIndex {
         int totalDocuments = documents.size();
         Map<String, Integer> documentFrequencies = new HashMap<>();
  
-        // Calculate the document frequencies which is used to calculate the TF-IDF
+        // All documents are tokenized once and normalized in one batch.
+        List<String> contents = new ArrayList<>(totalDocuments);
         for(JsonObject doc : documents) {
-            String content = doc.get("title").getAsString() + " " +
-                             doc.get("headings").getAsString() + " " + 
-                             doc.get("paragraphs").getAsString();
-            List<String> tokens = tokenizeContent(content);
+            contents.add(doc.get("title").getAsString() + " " +
+                         doc.get("headings").getAsString() + " " + 
+                         doc.get("paragraphs").getAsString());
+        }
+        List<List<String>> documentTokens = tokenizeContents(contents);
+
+        // Calculate the document frequencies which is used to calculate the TF-IDF
+        for(List<String> tokens : documentTokens) {
             Set<String> uniqueTokens = new HashSet<>(tokens);
 
             for (String token : uniqueTokens) {
@@ -104,13 +491,9 @@ public class ReverseIndex {
         }
 
         // Calculating the TF-IDF
-        for(JsonObject doc : documents) {
-            String docID = doc.get("url").getAsString();
-            String content = doc.get("title").getAsString() + " " +
-                             doc.get("headings").getAsString() + " " +
-                             doc.get("paragraphs").getAsString();
-    
-            List<String> tokens = tokenizeContent(content);
+        for(int i = 0; i < totalDocuments; i++) {
+            String docID = documents.get(i).get("url").getAsString();
+            List<String> tokens = documentTokens.get(i);
 
             Map<String, Double> tfidfValues = TFIDF.calculate(tokens, totalDocuments, documentFrequencies);
 
@@ -121,12 +504,75 @@ public class ReverseIndex {
                 addToken(token, docID, tfidf);
             }
         }
+        refresh();
     }
     
+    /** 
+     * Enables or disables the dynamic pruning of the search. Without pruning every matching document is scored
+     * term-at-a-time, which is only useful to compare the results.
+     * 
+     * @param dynamicPruning  true to skip documents which can`t get into the results
+     */
+
+    public void setDynamicPruning(boolean dynamicPruning) {
+        this.dynamicPruning = dynamicPruning;
+        clearQueryCache();
+    }
+
+    /** 
+     * Sets how many queries are cached, see {@link QueryCache}. The cached results are dropped.
+     * 
+     * @param size  the maximum number of cached queries or 0 to disable the cache
+     */
+
+    public void setQueryCacheSize(int size) {
+        queryCache = (size > 0) ? new QueryCache(size) : null;
+    }
+
+    /** 
+     * @return  the cache of the search results with its counters or null if the results are not cached.
+     */
+
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    private void clearQueryCache() {
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /** 
+     * Publishes a new snapshot with a new PageRank table, which is used by all following search queries. 
+     * The tokens and documents added since the last snapshot are published together with the table,
+     * so the search never combines new documents with old PageRank scores.
+     * This method has to be called again whenever the link structure of the intranet changes.
+     * 
+     * @param pageRankTable  the precomputed PageRank scores
+     */
+
+    public synchronized void publishPageRank(PageRankTable pageRankTable) {
+        pageRankCalculated = true;
+        if (changed) {
+            snapshot.set(createSnapshot(pageRankTable));
+        } else {
+            snapshot.set(snapshot.get().withPageRankTable(pageRankTable.forDocuments(documents), documentStore));
+        }
+    }
+
+    /** 
+     * @return  the PageRank table which is currently used by the search.
+     */
+
+    public PageRankTable getPageRankTable() {
+        return snapshot.get().getPageRankTable();
+    }
+
     /**
-     * This is the most important method and is used in the main-Search. Given a user input (String) this method searches the 
-     * Reverse Index for documents, which are mathing the input-token. it used the PageRank-algorithm and optionally the 
-     * Cosine Similarity for sorting the ranking results. 
+     * Searches the Reverse Index like {@link #searchQuery(String, boolean)}. If no PageRank table has been 
+     * published yet, the PageRank is calculated once for the given intranet and published for all following queries.
      * 
      * @param searchQuery  the search query as a string
      * @param useCosineSimilarity  whether to use Cosine Similarity in the ranking 
@@ -136,70 +582,320 @@ public class ReverseIndex {
      */
 
     public List<Map.Entry<String, Double>> searchQuery (String searchQuery, boolean useCosineSimilarity, JsonObject json) {
+        if (!pageRankCalculated) {
+            // Concurrent first queries wait for the query which calculates the PageRank instead of crawling again.
+            // An empty table is not calculated again, because the intranet has no pages then.
+            synchronized (pageRankLock) {
+                if (!pageRankCalculated) {
+                    PageRank pageRank = new PageRank(json);
+
+                    try {
+                        pageRank.calculate();
+                        publishPageRank(pageRank.getPageRankTable());
+                    } catch (IOException e) {
+                        logger.error("PageRank calculation failed: {}", e.getMessage(), e);
+                    } finally {
+                        // A failed calculation isn`t repeated by every query, the search uses no PageRank then.
+                        pageRankCalculated = true;
+                    }
+                }
+            }
+        }
+        return searchQuery(searchQuery, useCosineSimilarity);
+    }
+
+    /**
+     * Searches the Reverse Index and returns all matching documents, see {@link #searchQuery(String, boolean, int)}.
+     * 
+     * @param searchQuery  the search query as a string
+     * @param useCosineSimilarity  whether to use Cosine Similarity in the ranking 
+     * 
+     * @return  a sorted list of Document-IDs and their TF-IDF-scores.
+     */
+
+    public List<Map.Entry<String, Double>> searchQuery (String searchQuery, boolean useCosineSimilarity) {
+        return searchQuery(searchQuery, useCosineSimilarity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This is the most important method and is used in the main-Search. Given a user input (String) this method searches the 
+     * Reverse Index for documents, which are mathing the input-token. it used the published PageRank table and optionally the 
+     * Cosine Similarity for sorting the ranking results. Only the k best documents are kept in a bounded heap,
+     * so only they are sorted and returned. The whole query reads one published snapshot without taking a lock.
+     * The results of repeated queries are taken from the {@link QueryCache} as long as the snapshot is the same.
+     * 
+     * @param searchQuery  the search query as a string
+     * @param useCosineSimilarity  whether to use Cosine Similarity in the ranking 
+     * @param k  the maximum number of results
+     * 
+     * @return  an unmodifiable sorted list of the k best Document-IDs and their TF-IDF-scores.
+     */
+
+    public List<Map.Entry<String, Double>> searchQuery (String searchQuery, boolean useCosineSimilarity, int k) {
+        // Reads the published snapshot with the posting lists and the precomputed PageRank-scores once.
+        return searchQuery(searchQuery, useCosineSimilarity, k, snapshot.get());
+    }
+
+    /**
+     * Searches a snapshot, which was read before with {@link #getSnapshot()}, like 
+     * {@link #searchQuery(String, boolean, int)}. So the caller can read the stored fields of the results from the
+     * same snapshot.
+     * 
+     * @param searchQuery  the search query as a string
+     * @param useCosineSimilarity  whether to use Cosine Similarity in the ranking 
+     * @param k  the maximum number of results
+     * @param current  a published snapshot of this index
+     * 
+     * @return  an unmodifiable sorted list of the k best Document-IDs and their TF-IDF-scores.
+     */
+
+    List<Map.Entry<String, Double>> searchQuery (String searchQuery, boolean useCosineSimilarity, int k, 
+            IndexSnapshot current) {
         List<String> tokens = tokenizeContent(searchQuery);
-        Vector vektor = new Vector();
-        Map<String, Double> results = new HashMap<>();
-        Map<String, Double> cosineSim = new HashMap<>();
-        Map<String, Vector> vektors = new HashMap<>();
-
-        // Calculates the PageRank-scores.
-        PageRank pageRank = new PageRank(json);
-        Map<String, Double> pageRanks = new HashMap<>();
-        
-        try {
-            pageRank.calculate();
-            pageRanks = pageRank.pageRankValues;
-        } catch (IOException e) {
-            logger.error("PageRank calculation failed: {}", e.getMessage(), e);
+
+        QueryCache cache = queryCache;
+        if (cache == null) {
+            return search(tokens, useCosineSimilarity, k, current);
+        }
+        List<Map.Entry<String, Double>> results = cache.get(tokens, useCosineSimilarity, k, current.getGeneration());
+        if (results == null) {
+            results = search(tokens, useCosineSimilarity, k, current);
+            cache.put(tokens, useCosineSimilarity, k, current.getGeneration(), results);
         }
+        return results;
+    }
 
-        // Optional use of Cosine Similarity for ranking 
-        if(useCosineSimilarity) {
-            for (String token : tokens) {
-                vektor.addToken(token, 1);
+    /** 
+     * Searches the tokens of a query in a snapshot. The Term-IDs of the query, the scores and the best documents are
+     * kept in a borrowed search context, so a query only allocates its cursors and its results.
+     */
+
+    private List<Map.Entry<String, Double>> search(List<String> tokens, boolean useCosineSimilarity, int k, 
+            IndexSnapshot current) {
+        SearchContext context = borrowContext();
+        try {
+            int termCount = tokens.size();
+            context.ensureTermCapacity(termCount);
+            int[] termIDs = context.termIDs;
+            boolean[] firstOccurrence = context.firstOccurrence;
+
+            // A token which occurs several times in the query is only part of the query vector and the document vectors
+            // once. The few tokens of a query are compared with the earlier ones, unknown tokens by their text.
+            int distinctTokens = 0;
+            for (int i = 0; i < termCount; i++) {
+                int termID = terms.getTermID(tokens.get(i));
+                termIDs[i] = termID;
+                boolean first = true;
+                for (int j = 0; j < i && first; j++) {
+                    first = termIDs[j] != termID || (termID < 0 && !tokens.get(j).equals(tokens.get(i)));
+                }
+                firstOccurrence[i] = first;
+                if (first) {
+                    distinctTokens++;
+                }
             }
+            // Every distinct token has the weight 1 in the query vector of the Cosine Similarity.
+            double queryMagnitude = useCosineSimilarity ? Math.sqrt(distinctTokens) : 0.0;
+
+            TopKCollector topK = context.topK;
+            topK.reset(k);
+            // If all documents are requested, no document can be skipped, so the cheaper term-at-a-time search is used.
+            if (!dynamicPruning || k >= current.getDocumentCount()) {
+                searchTermAtATime(context, termCount, queryMagnitude, useCosineSimilarity, current);
+            } else {
+                searchDocumentAtATime(context, termCount, queryMagnitude, useCosineSimilarity, current);
+            }
+            return toResults(context);
+        } finally {
+            releaseContext(context);
         }
+    } 
 
-        for (String token : tokens) {
-            Map<String, Double> tokenInfo = getTokenInfo(token);
+    /**
+     * @return  the number of unused search contexts, which are kept for the next queries.
+     */
 
-            for (Map.Entry<String, Double> entry : tokenInfo.entrySet()) {
-                String url = entry.getKey();
-                double tfidf = entry.getValue();
+    int getPooledSearchContexts() {
+        return pooledContexts.get();
+    }
+
+    private SearchContext borrowContext() {
+        SearchContext context = searchContexts.poll();
+        if (context == null) {
+            return new SearchContext();
+        }
+        pooledContexts.decrementAndGet();
+        return context;
+    }
+
+    private void releaseContext(SearchContext context) {
+        // Only a few contexts are kept, so a burst of concurrent queries doesn`t keep its accumulators forever.
+        if (pooledContexts.incrementAndGet() <= MAX_POOLED_CONTEXTS) {
+            searchContexts.offer(context);
+        } else {
+            pooledContexts.decrementAndGet();
+        }
+    }
+
+    /** 
+     * Scores the documents term-at-a-time. The posting lists of the query tokens are read one after another and the
+     * scores are added into the score accumulator of the search context, which is reused by the following queries.
+     * For the Cosine Similarity the accumulator collects the dot product and the squared weights of the document vector.
+     */
+
+    private void searchTermAtATime(SearchContext context, int termCount, double queryMagnitude, 
+            boolean useCosineSimilarity, IndexSnapshot current) {
+        PageRankTable pageRanks = current.getPageRankTable();
+        ScoreAccumulator accumulator = context.accumulator;
+        TopKCollector topK = context.topK;
+        accumulator.ensureCapacity(current.getDocumentCount());
 
-                if(useCosineSimilarity) {
-                    vektors.put(url, new Vector());
-                    vektors.get(url).addToken(token, tfidf);
+        try {
+            for (int i = 0; i < termCount; i++) {
+                if (useCosineSimilarity && !context.firstOccurrence[i]) {
+                    continue;
                 }
-                else {
-                    results.put(url, results.getOrDefault(url, 0.0) + tfidf);
+                PostingCursor cursor = current.getPostingList(context.termIDs[i]).cursor();
+
+                for (int docID = cursor.next(); docID != PostingCursor.NO_MORE_DOCS; docID = cursor.next()) {
+                    double tfidf = cursor.weight();
+                    if (useCosineSimilarity) {
+                        accumulator.add(docID, tfidf, tfidf * tfidf);
+                    } else {
+                        accumulator.add(docID, tfidf, 0.0);
+                    }
                 }
-            } 
-        } 
+            }
 
-        // Calculates the Cosine Similarity if useCosineSimilarity is true
-        for (Map.Entry<String, Vector> entry : vektors.entrySet()) {
-            String url = entry.getKey();
-            Vector otherVector = entry.getValue();
+            for (int i = 0; i < accumulator.size(); i++) {
+                int docID = accumulator.docID(i);
+                double score = accumulator.value(docID);
 
-            double cosineSimilarity = Cosine.cosineSimilarity(vektor, otherVector);
-            cosineSim.put(url, cosineSimilarity);
+                if (useCosineSimilarity) {
+                    score = combineWithPageRank(pageRanks.getScore(docID), 
+                        score, queryMagnitude, Math.sqrt(accumulator.squaredValue(docID)));
+                }
+                topK.collect(docID, score);
+            }
+        } finally {
+            accumulator.reset();
         }
+    }
 
-        // Combine PageRank and Cosine Similarity Scores.
-        for (String url : cosineSim.keySet()) {
-            double cosineScore = cosineSim.getOrDefault(url, 0.0);
-            double pageRankScore = pageRanks.getOrDefault(url, 0.0);
+    /** 
+     * Scores the documents document-at-a-time with the WAND algorithm, which skips documents that can`t get into the
+     * k best documents. The Cosine Similarity is at most 1, so its weighted part is an upper bound for every token.
+     */
 
-            double factor = 0.75;
-            double combinedScore = factor * pageRankScore + (1 - factor) * cosineScore;
-            results.put(url, combinedScore);
+    private void searchDocumentAtATime(SearchContext context, int termCount, double queryMagnitude, 
+            boolean useCosineSimilarity, IndexSnapshot current) {
+        PageRankTable pageRanks = current.getPageRankTable();
+        int[] termIDs = context.termIDs;
+        boolean[] firstOccurrence = context.firstOccurrence;
+        PostingCursor[] cursors = new PostingCursor[termCount];
+        double[] upperBounds = new double[termCount];
+        for (int i = 0; i < cursors.length; i++) {
+            Postings postings = current.getPostingList(termIDs[i]);
+            cursors[i] = postings.cursor();
+            upperBounds[i] = useCosineSimilarity ? (1 - PAGERANK_FACTOR) : postings.maxWeight();
         }
+        double pageRankBound = useCosineSimilarity ? PAGERANK_FACTOR * pageRanks.getMaxScore() : 0.0;
 
-        // Sorts the results in descending order by their scores.
-        List<Map.Entry<String, Double>> sortedResults = new ArrayList<>(results.entrySet());
-        sortedResults.sort((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()));
+        WandQueryProcessor processor = new WandQueryProcessor(cursors, upperBounds, pageRankBound);
+        processor.search(new WandQueryProcessor.DocumentScorer() {
 
-        return sortedResults;
-    } 
-}
\ No newline at end of file
+            @Override
+            public double prior(int docID) {
+                return useCosineSimilarity ? PAGERANK_FACTOR * pageRanks.getScore(docID) : 0.0;
+            }
+
+            @Override
+            public double score(int docID, PostingCursor[] matches) {
+                double score = 0.0;
+                double dotProduct = 0.0;
+                double squaredWeights = 0.0;
+
+                // The tokens are added in the same order as in the term-at-a-time search, so the scores are equal.
+                for (int i = 0; i < matches.length; i++) {
+                    if (matches[i].docID() == docID) {
+                        double tfidf = matches[i].weight();
+                        score += tfidf;
+                        if (firstOccurrence[i]) {
+                            dotProduct += tfidf;
+                            squaredWeights += tfidf * tfidf;
+                        }
+                    }
+                }
+
+                if (useCosineSimilarity) {
+                    score = combineWithPageRank(pageRanks.getScore(docID), 
+                        dotProduct, queryMagnitude, Math.sqrt(squaredWeights));
+                }
+                return score;
+            }
+        }, context.topK, true);
+
+        logger.debug("Scored {} documents with {} tokens", processor.getScoredDocuments(), termCount);
+    }
+
+    /** 
+     * Combines the PageRank of a document with the Cosine Similarity between the query vector and the document vector,
+     * which contains the TF-IDF-scores of the query tokens in the document.
+     */
+
+    private static double combineWithPageRank(double pageRankScore, double dotProduct, double queryMagnitude, double documentMagnitude) {
+        double cosineScore = Cosine.cosineSimilarity(dotProduct, queryMagnitude, documentMagnitude);
+        return PAGERANK_FACTOR * pageRankScore + (1 - PAGERANK_FACTOR) * cosineScore;
+    }
+
+    /** 
+     * Sorts the collected documents in descending order by their scores and translates the Document-IDs into urls.
+     * 
+     * @param topK  the collected documents
+     * 
+     * @return  the sorted list of urls and their scores.
+     */
+
+    private List<Map.Entry<String, Double>> toResults(SearchContext context) {
+        context.ensureResultCapacity(context.topK.size());
+        int[] docIDs = context.resultDocIDs;
+        double[] scores = context.resultScores;
+        int count = context.topK.drainSorted(docIDs, scores);
+
+        List<Map.Entry<String, Double>> sortedResults = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sortedResults.add(new AbstractMap.SimpleImmutableEntry<>(documents.getURL(docIDs[i]), scores[i]));
+        }
+        // The results may be cached and shared by several queries.
+        return Collections.unmodifiableList(sortedResults);
+    }
+
+    /** 
+     * The reused arrays of a query: the score accumulator, the Term-IDs of the query tokens, the collector of the best
+     * documents and the arrays of the sorted results. A context is used by one query at a time.
+     */
+
+    private static final class SearchContext {
+
+        private final ScoreAccumulator accumulator = new ScoreAccumulator();
+        private final TopKCollector topK = new TopKCollector(1);
+        private int[] termIDs = new int[8];
+        private boolean[] firstOccurrence = new boolean[8];
+        private int[] resultDocIDs = new int[16];
+        private double[] resultScores = new double[16];
+
+        void ensureTermCapacity(int termCount) {
+            if (termIDs.length < termCount) {
+                termIDs = new int[Math.max(termCount, 2 * termIDs.length)];
+                firstOccurrence = new boolean[termIDs.length];
+            }
+        }
+
+        void ensureResultCapacity(int count) {
+            if (resultDocIDs.length < count) {
+                resultDocIDs = new int[Math.max(count, 2 * resultDocIDs.length)];
+                resultScores = new double[resultDocIDs.length];
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "ScoreAccumulator" collects the partial scores of a term-at-a-time search. The scores are added into
+ * primitive arrays indexed by the Document-ID, and every document which got a score is remembered in a dirty list.
+ * reset() only clears the entries of the dirty list, so the arrays can be reused for the next query without
+ * allocating or clearing memory for all documents. An accumulator is not thread-safe, only one query uses it at a time.
+ */
+
+final class ScoreAccumulator {
+
+    private double[] values = new double[0];
+    private double[] squaredValues = new double[0];
+    private boolean[] touched = new boolean[0];
+    private int[] dirtyDocIDs = new int[16];
+    private int dirtyCount = 0;
+
+    /**
+     * Makes sure that documents with Document-IDs below the given count can be added. Must be called after reset().
+     *
+     * @param documentCount  the number of documents
+     */
+
+    void ensureCapacity(int documentCount) {
+        if (touched.length < documentCount) {
+            int capacity = Math.max(documentCount, 2 * touched.length);
+            values = Arrays.copyOf(values, capacity);
+            squaredValues = Arrays.copyOf(squaredValues, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+    }
+
+    /**
+     * Adds a value and a squared value to the partial scores of a document.
+     *
+     * @param docID  the Document-ID
+     * @param value  the value to add to the score
+     * @param squaredValue  the value to add to the sum of squares, which is needed for the magnitude
+     */
+
+    void add(int docID, double value, double squaredValue) {
+        if (!touched[docID]) {
+            touched[docID] = true;
+            if (dirtyCount == dirtyDocIDs.length) {
+                dirtyDocIDs = Arrays.copyOf(dirtyDocIDs, 2 * dirtyCount);
+            }
+            dirtyDocIDs[dirtyCount++] = docID;
+        }
+        values[docID] += value;
+        squaredValues[docID] += squaredValue;
+    }
+
+    /**
+     * @return  the number of documents with a score.
+     */
+
+    int size() {
+        return dirtyCount;
+    }
+
+    /**
+     * @param index  the position in the dirty list
+     *
+     * @return  the Document-ID of the document at the position.
+     */
+
+    int docID(int index) {
+        return dirtyDocIDs[index];
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the sum of the values of the document.
+     */
+
+    double value(int docID) {
+        return values[docID];
+    }
+
+    /**
+     * @param docID  the Document-ID
+     *
+     * @return  the sum of the squared values of the document.
+     */
+
+    double squaredValue(int docID) {
+        return squaredValues[docID];
+    }
+
+    /**
+     * Clears the scores of all documents in the dirty list.
+     */
+
+    void reset() {
+        for (int i = 0; i < dirtyCount; i++) {
+            int docID = dirtyDocIDs[i];
+            values[docID] = 0.0;
+            squaredValues[docID] = 0.0;
+            touched[docID] = false;
+        }
+        dirtyCount = 0;
+    }
+}
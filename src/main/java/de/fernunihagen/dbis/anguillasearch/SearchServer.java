@@ -0,0 +1,290 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The class "SearchServer" offers the search over HTTP with the server of the JDK. All answers are JSON objects:
+ * <pre>
+ * GET /search?q=query[&amp;k=10][&amp;cosine=true]   the k best results with url, title and score
+ * GET /document?id=docID or ?url=url         the stored data of a document
+ * GET /stats                                 the size of the published index and the counters of the caches
+ * </pre>
+ * Every request runs on its own virtual thread (or on a thread pool if virtual threads are not available) and reads
+ * the published snapshot of the index without locks, so any number of requests can be answered at the same time,
+ * also while a re-crawl prepares the next snapshot.
+ */
+
+public class SearchServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchServer.class);
+    private static final Gson GSON = new Gson();
+
+    // Number of results of a search without the parameter k, and the largest allowed k.
+    private static final int DEFAULT_RESULTS = 10;
+    private static final int MAX_RESULTS = 100;
+    // Number of connections which may wait for the server, so bursts of requests are not refused.
+    private static final int BACKLOG = 1024;
+    // Number of platform threads if virtual threads are not available.
+    private static final int FALLBACK_THREADS = 64;
+
+    // The search results and the stored fields of the documents are read from the same published snapshot of the index.
+    private final ReverseIndex reverseIndex;
+    private final LongAdder searches = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server for the index of a crawler. Re-crawls of the crawler are visible as soon as they are published.
+     *
+     * @param crawler  the crawler with the index
+     */
+
+    public SearchServer(Crawler crawler) {
+        this(crawler.getReverseIndex());
+    }
+
+    /**
+     * Creates a server for the index of an opened segment.
+     *
+     * @param segment  the index segment
+     */
+
+    public SearchServer(IndexSegment segment) {
+        this(segment.getReverseIndex());
+    }
+
+    private SearchServer(ReverseIndex reverseIndex) {
+        this.reverseIndex = reverseIndex;
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @param port  the port of the server or 0 for a free port
+     *
+     * @throws IOException if the port can`t be used
+     */
+
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server was already started");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/search", exchange -> handle(exchange, this::search));
+        server.createContext("/document", exchange -> handle(exchange, this::document));
+        server.createContext("/stats", exchange -> handle(exchange, parameters -> stats()));
+
+        executor = VirtualThreads.newExecutor("search-server", FALLBACK_THREADS);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Search server started on port {}", getPort());
+    }
+
+    /**
+     * Stops the server. Requests which are still running are cancelled.
+     */
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return  the port of the started server.
+     */
+
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The server is not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    private JsonObject search(Map<String, String> parameters) {
+        String query = parameters.get("q");
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("The parameter q is missing");
+        }
+        int k = parseInt(parameters.getOrDefault("k", String.valueOf(DEFAULT_RESULTS)), "k");
+        if (k < 1 || k > MAX_RESULTS) {
+            throw new IllegalArgumentException("The parameter k must be between 1 and " + MAX_RESULTS);
+        }
+        boolean useCosineSimilarity = !"false".equalsIgnoreCase(parameters.get("cosine"));
+
+        // The titles are read from the snapshot of the results, even if a new snapshot is published meanwhile.
+        IndexSnapshot snapshot = reverseIndex.getSnapshot();
+        List<Map.Entry<String, Double>> searchResults = reverseIndex.searchQuery(query, useCosineSimilarity, k, snapshot);
+        searches.increment();
+
+        // Only the titles of the results are read from the store.
+        DocumentStore store = snapshot.getDocumentStore();
+        int[] docIDs = new int[searchResults.size()];
+        for (int i = 0; i < docIDs.length; i++) {
+            docIDs[i] = store.getDocID(searchResults.get(i).getKey());
+        }
+        String[] titles = store.getTitles(docIDs);
+
+        JsonArray results = new JsonArray();
+        for (int i = 0; i < docIDs.length; i++) {
+            JsonObject result = new JsonObject();
+            result.addProperty("url", searchResults.get(i).getKey());
+            result.addProperty("title", titles[i]);
+            result.addProperty("score", searchResults.get(i).getValue());
+            results.add(result);
+        }
+
+        JsonObject answer = new JsonObject();
+        answer.addProperty("query", query);
+        answer.add("results", results);
+        return answer;
+    }
+
+    private JsonObject document(Map<String, String> parameters) {
+        IndexSnapshot snapshot = reverseIndex.getSnapshot();
+        DocumentStore store = snapshot.getDocumentStore();
+        int docID;
+        if (parameters.containsKey("id")) {
+            docID = parseInt(parameters.get("id"), "id");
+        } else if (parameters.containsKey("url")) {
+            docID = store.getDocID(parameters.get("url"));
+        } else {
+            throw new IllegalArgumentException("The parameter id or url is missing");
+        }
+
+        if (!store.contains(docID)) {
+            return null;
+        }
+
+        JsonArray links = new JsonArray();
+        for (String link : store.getLinks(docID)) {
+            links.add(link);
+        }
+
+        JsonObject answer = new JsonObject();
+        answer.addProperty("id", docID);
+        answer.addProperty("url", store.getURL(docID));
+        answer.addProperty("title", store.getTitle(docID));
+        answer.addProperty("header", store.getHeader(docID));
+        answer.addProperty("pageRank", snapshot.getPageRankTable().getScore(docID));
+        answer.add("links", links);
+        return answer;
+    }
+
+    private JsonObject stats() {
+        IndexSnapshot snapshot = reverseIndex.getSnapshot();
+
+        JsonObject answer = new JsonObject();
+        answer.addProperty("documents", snapshot.getDocumentCount());
+        answer.addProperty("terms", snapshot.getTermCount());
+        answer.addProperty("generation", snapshot.getGeneration());
+        answer.addProperty("searches", searches.sum());
+
+        QueryCache cache = reverseIndex.getQueryCache();
+        if (cache != null) {
+            JsonObject cacheStats = new JsonObject();
+            cacheStats.addProperty("size", cache.size());
+            cacheStats.addProperty("hits", cache.getHits());
+            cacheStats.addProperty("misses", cache.getMisses());
+            cacheStats.addProperty("evictions", cache.getEvictions());
+            answer.add("queryCache", cacheStats);
+        }
+
+        PostingBlockCache blockCache = reverseIndex.getPostingBlockCache();
+        if (blockCache != null) {
+            JsonObject blockCacheStats = new JsonObject();
+            blockCacheStats.addProperty("bytes", blockCache.getSizeInBytes());
+            blockCacheStats.addProperty("hits", blockCache.getHits());
+            blockCacheStats.addProperty("misses", blockCache.getMisses());
+            blockCacheStats.addProperty("evictions", blockCache.getEvictions());
+            blockCacheStats.addProperty("rejections", blockCache.getRejections());
+            answer.add("postingBlockCache", blockCacheStats);
+        }
+        return answer;
+    }
+
+    /**
+     * Answers a request with the JSON object of the handler. A handler returns null if the requested object doesn`t
+     * exist and throws an IllegalArgumentException if a parameter is wrong.
+     */
+
+    private void handle(HttpExchange exchange, Function<Map<String, String>, JsonObject> handler) throws IOException {
+        int status;
+        JsonObject answer;
+
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                status = 405;
+                answer = error("Only GET requests are supported");
+            } else {
+                answer = handler.apply(parseParameters(exchange.getRequestURI().getRawQuery()));
+                status = (answer != null) ? 200 : 404;
+                if (answer == null) {
+                    answer = error("Not found");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            answer = error(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Request {} failed", exchange.getRequestURI(), e);
+            status = 500;
+            answer = error("Internal error");
+        }
+
+        byte[] body = GSON.toJson(answer).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseParameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = (separator >= 0) ? parameter.substring(0, separator) : parameter;
+            String value = (separator >= 0) ? parameter.substring(separator + 1) : "";
+            // The first value of a parameter is used.
+            parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The parameter " + name + " must be a number");
+        }
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject answer = new JsonObject();
+        answer.addProperty("error", message);
+        return answer;
+    }
+}
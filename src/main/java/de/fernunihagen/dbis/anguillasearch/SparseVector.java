@@ -0,0 +1,215 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "SparseVector" is the compact, immutable form of a TF-IDF vector. Only the tokens with a weight are stored,
+ * as sorted Term-IDs in a primitive int array with a parallel double array of weights. The magnitude is calculated
+ * once when the vector is created, and the dot product of two vectors is a merge of the two sorted arrays or,
+ * for a short query and a long document, a search of the few query Term-IDs in the document. No objects are created
+ * while documents are ranked.
+ */
+
+public final class SparseVector {
+
+    // Vector without any weight, used for documents without tokens.
+    public static final SparseVector EMPTY = new SparseVector(new int[0], new double[0]);
+
+    // A vector this many times shorter than the other is searched in it instead of merged with it.
+    private static final int LOOKUP_RATIO = 8;
+
+    private final int[] termIDs;
+    private final double[] values;
+    private final double magnitude;
+
+    /**
+     * Creates a vector from sorted arrays. The arrays are not copied, so they must not be changed afterwards.
+     *
+     * @param termIDs  the Term-IDs in ascending order
+     * @param values  the weights of the tokens
+     */
+
+    public SparseVector(int[] termIDs, double[] values) {
+        this(termIDs, values, magnitude(values));
+    }
+
+    private SparseVector(int[] termIDs, double[] values, double magnitude) {
+        if (termIDs.length != values.length) {
+            throw new IllegalArgumentException("The Term-IDs and the weights must have the same length");
+        }
+        for (int i = 1; i < termIDs.length; i++) {
+            if (termIDs[i - 1] >= termIDs[i]) {
+                throw new IllegalArgumentException("The Term-IDs must be sorted and unique");
+            }
+        }
+        this.termIDs = termIDs;
+        this.values = values;
+        this.magnitude = magnitude;
+    }
+
+    /**
+     * Creates a vector from weights collected by Term-ID.
+     *
+     * @param weights  the weights, stored by Term-ID instead of Document-ID
+     *
+     * @return  the vector.
+     */
+
+    static SparseVector from(PostingsBuilder weights) {
+        if (weights.size() == 0) {
+            return EMPTY;
+        }
+        int[] termIDs = new int[weights.size()];
+        double[] values = new double[weights.size()];
+
+        for (int i = 0; i < termIDs.length; i++) {
+            termIDs[i] = weights.docID(i);
+            values[i] = weights.value(i);
+        }
+        return new SparseVector(termIDs, values);
+    }
+
+    /**
+     * Translates a vector of tokens into Term-IDs. Tokens which aren`t in the dictionary can`t match any document,
+     * so they are left out, but they still count for the magnitude of the vector.
+     *
+     * @param vector  the vector of tokens
+     * @param terms  the dictionary of the Term-IDs
+     *
+     * @return  the vector of Term-IDs.
+     */
+
+    public static SparseVector fromVector(Vector vector, TermDictionary terms) {
+        PostingsBuilder weights = new PostingsBuilder();
+
+        for (Map.Entry<String, Double> entry : vector.getAllMetrics().entrySet()) {
+            int termID = terms.getTermID(entry.getKey());
+            if (termID >= 0) {
+                weights.put(termID, entry.getValue());
+            }
+        }
+        SparseVector known = from(weights);
+        return new SparseVector(known.termIDs, known.values, Cosine.magnitude(vector));
+    }
+
+    /**
+     * @return  the number of tokens with a weight.
+     */
+
+    public int size() {
+        return termIDs.length;
+    }
+
+    /**
+     * @param index  the position of the token
+     *
+     * @return  the Term-ID of the token.
+     */
+
+    public int termID(int index) {
+        return termIDs[index];
+    }
+
+    /**
+     * @param index  the position of the token
+     *
+     * @return  the weight of the token.
+     */
+
+    public double value(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param termID  the Term-ID of a token
+     *
+     * @return  the weight of the token or 0 if the vector doesn`t contain it.
+     */
+
+    public double get(int termID) {
+        int index = Arrays.binarySearch(termIDs, termID);
+        return (index >= 0) ? values[index] : 0.0;
+    }
+
+    /**
+     * @return  the magnitude (L2 norm) of the vector.
+     */
+
+    public double magnitude() {
+        return magnitude;
+    }
+
+    /**
+     * Calculates the dot product of the two vectors. If one vector is much shorter, only its Term-IDs are searched
+     * in the other vector like in {@link #lookupDot(SparseVector)}, otherwise the sorted Term-IDs of both vectors
+     * are merged.
+     *
+     * @param other  the other vector
+     *
+     * @return  the dot product of the two vectors.
+     */
+
+    public double dot(SparseVector other) {
+        if (termIDs.length * LOOKUP_RATIO < other.termIDs.length) {
+            return lookupDot(other);
+        }
+        if (other.termIDs.length * LOOKUP_RATIO < termIDs.length) {
+            return other.lookupDot(this);
+        }
+        int[] otherTermIDs = other.termIDs;
+        double[] otherValues = other.values;
+        double dotProduct = 0.0;
+        int i = 0;
+        int j = 0;
+
+        while (i < termIDs.length && j < otherTermIDs.length) {
+            int termID = termIDs[i];
+            int otherTermID = otherTermIDs[j];
+
+            if (termID == otherTermID) {
+                dotProduct += values[i++] * otherValues[j++];
+            } else if (termID < otherTermID) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return dotProduct;
+    }
+
+    /**
+     * Calculates the dot product by searching the Term-IDs of this vector, usually a short query, in the other vector.
+     * Every search starts behind the last found position, so the costs depend on the length of this vector and only
+     * logarithmically on the length of the other vector.
+     *
+     * @param other  the other vector, usually a long document vector
+     *
+     * @return  the dot product of the two vectors.
+     */
+
+    public double lookupDot(SparseVector other) {
+        int[] otherTermIDs = other.termIDs;
+        double dotProduct = 0.0;
+        int from = 0;
+
+        for (int i = 0; i < termIDs.length && from < otherTermIDs.length; i++) {
+            int index = Arrays.binarySearch(otherTermIDs, from, otherTermIDs.length, termIDs[i]);
+            if (index >= 0) {
+                dotProduct += values[i] * other.values[index];
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return dotProduct;
+    }
+
+    private static double magnitude(double[] values) {
+        double magnitude = 0.0;
+
+        for (double value : values) {
+            magnitude += value * value;
+        }
+        return Math.sqrt(magnitude);
+    }
+}
@@ -38,4 +38,71 @@ public class Stopwords {
         "where", "where's", "which", "while", "who", "who's", "whom", "why", "why's", "with", "won't", "would", "wouldn't", 
         "you", "you'd", "you'll", "you're", "you've", "your", "yours", "yourself", "yourselves"
     )));
+
+    /*
+     * The stopwords as a trie over the characters a-z and the apostrophe, so a token can be looked up in a char array
+     * without creating a String. The child of the node n for the character c is TRIE[n * ALPHABET + index(c)] 
+     * or 0 if there is no child. Node 0 is the root.
+     */
+
+    private static final int ALPHABET = 27;
+    private static final int[] TRIE;
+    private static final boolean[] STOPWORD_NODES;
+
+    static {
+        int maxNodes = 1;
+        for (String stopword : ENGLISH_STOPWORDS) {
+            maxNodes += stopword.length();
+        }
+        int[] trie = new int[maxNodes * ALPHABET];
+        boolean[] stopwordNodes = new boolean[maxNodes];
+        int nodes = 1;
+
+        for (String stopword : ENGLISH_STOPWORDS) {
+            int node = 0;
+            for (int i = 0; i < stopword.length(); i++) {
+                int edge = node * ALPHABET + index(stopword.charAt(i));
+                if (trie[edge] == 0) {
+                    trie[edge] = nodes++;
+                }
+                node = trie[edge];
+            }
+            stopwordNodes[node] = true;
+        }
+        TRIE = trie;
+        STOPWORD_NODES = stopwordNodes;
+    }
+
+    /**
+     * Checks if a lower case token is a stopword.
+     * 
+     * @param chars  the characters of the token
+     * @param start  the position of the first character
+     * @param length  the number of characters
+     * 
+     * @return  true if the token is one of the ENGLISH_STOPWORDS.
+     */
+
+    public static boolean isStopword(char[] chars, int start, int length) {
+        int node = 0;
+
+        for (int i = start; i < start + length; i++) {
+            int index = index(chars[i]);
+            if (index < 0) {
+                return false;
+            }
+            node = TRIE[node * ALPHABET + index];
+            if (node == 0) {
+                return false;
+            }
+        }
+        return STOPWORD_NODES[node];
+    }
+
+    private static int index(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        return (c == '\'') ? ALPHABET - 1 : -1;
+    }
 }
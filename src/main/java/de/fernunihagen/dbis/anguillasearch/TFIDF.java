@@ -42,14 +42,28 @@ public class TFIDF {
             String token = entry.getKey();
 
             int documentFrequency = documentFrequencies.get(token);
-
-            double tf = (double) termFrequencies.get(token) / totalWordsInDoc;
-            double idf = Math.log((double) totalDocuments / (documentFrequency));
-            double tfidf = tf * idf;
+            double tfidf = calculate(entry.getValue(), totalWordsInDoc, totalDocuments, documentFrequency);
 
             tfidfValues.put(token, tfidf);
         }
 
         return tfidfValues;
     }
+
+    /**
+     * Calculates the TF-IDF value of a single token from its raw counts.
+     * 
+     * @param termFrequency  how often the token appears in the document
+     * @param totalWordsInDoc  the number of tokens in the document
+     * @param totalDocuments  the total number of documents in the intranet
+     * @param documentFrequency  the number of documents which contain the token
+     * 
+     * @return  the TF-IDF value of the token in the document.
+     */
+
+    public static double calculate(int termFrequency, int totalWordsInDoc, int totalDocuments, int documentFrequency) {
+        double tf = (double) termFrequency / totalWordsInDoc;
+        double idf = Math.log((double) totalDocuments / (documentFrequency));
+        return tf * idf;
+    }
 }
\ No newline at end of file
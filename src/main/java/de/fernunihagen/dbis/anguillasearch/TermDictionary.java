@@ -0,0 +1,40 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The class "TermDictionary" maps every token of the index to a dense integer Term-ID.
+ */
+
+public class TermDictionary extends IdRegistry {
+
+    /**
+     * Returns the Term-ID of a token and assigns a new one if the token is unknown.
+     *
+     * @param token  the token
+     *
+     * @return  the Term-ID of the token.
+     */
+
+    public int register(String token) {
+        return super.register(token);
+    }
+
+    /**
+     * @param token  the token
+     *
+     * @return  the Term-ID of the token or -1 if the token is not in the index.
+     */
+
+    public int getTermID(String token) {
+        return getId(token);
+    }
+
+    /**
+     * @param termID  the Term-ID
+     *
+     * @return  the token with the given Term-ID.
+     */
+
+    public String getToken(int termID) {
+        return getKey(termID);
+    }
+}
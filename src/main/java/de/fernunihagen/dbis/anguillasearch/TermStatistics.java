@@ -0,0 +1,172 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "TermStatistics" stores the raw term frequencies of every indexed document and the number of tokens
+ * in each document. The document frequencies and the TF-IDF values are calculated from these counts when they are
+ * requested, so documents can be added one by one while crawling and the index can be published at any time.
+ * Tokens and documents are identified by their Term-IDs and Document-IDs.
+ */
+
+public class TermStatistics {
+
+    // The raw term frequencies. The postings of the token with the Term-ID t are stored at position t.
+    private final List<PostingsBuilder> termFrequencies = new ArrayList<>();
+    // Number of tokens of every document, indexed by the Document-ID. Unknown documents have the length -1.
+    private int[] documentLengths = new int[0];
+    // The distinct Term-IDs of every document, indexed by the Document-ID, so a document can be removed again.
+    private int[][] documentTerms = new int[0][];
+    private int documentCount = 0;
+
+    /**
+     * Adds the tokens of a document to the statistics. The document frequency of every token is updated immediately.
+     * A document which was removed can be added again with its new tokens.
+     *
+     * @param docID  the Document-ID of the document
+     * @param termIDs  the Term-IDs of the tokens of the document
+     */
+
+    public synchronized void addDocument(int docID, int[] termIDs) {
+        if (isIndexed(docID)) {
+            throw new IllegalArgumentException("Document was already indexed: " + docID);
+        }
+        if (docID >= documentLengths.length) {
+            int oldLength = documentLengths.length;
+            documentLengths = Arrays.copyOf(documentLengths, Math.max(docID + 1, oldLength * 2));
+            Arrays.fill(documentLengths, oldLength, documentLengths.length, -1);
+            documentTerms = Arrays.copyOf(documentTerms, documentLengths.length);
+        }
+        documentLengths[docID] = termIDs.length;
+        documentTerms[docID] = Arrays.stream(termIDs).distinct().sorted().toArray();
+        documentCount++;
+
+        for (int termID : termIDs) {
+            while (termFrequencies.size() <= termID) {
+                termFrequencies.add(new PostingsBuilder());
+            }
+            termFrequencies.get(termID).add(docID, 1);
+        }
+    }
+
+    /**
+     * Removes a document from the statistics. Only the postings of its own tokens are changed,
+     * so the costs depend on the size of the document and not on the size of the index.
+     *
+     * @param docID  the Document-ID of the document
+     *
+     * @return  true if the document was indexed.
+     */
+
+    public synchronized boolean removeDocument(int docID) {
+        if (!isIndexed(docID)) {
+            return false;
+        }
+        for (int termID : documentTerms[docID]) {
+            termFrequencies.get(termID).remove(docID);
+        }
+        documentLengths[docID] = -1;
+        documentTerms[docID] = null;
+        documentCount--;
+        return true;
+    }
+
+    private boolean isIndexed(int docID) {
+        return docID >= 0 && docID < documentLengths.length && documentLengths[docID] >= 0;
+    }
+
+    /**
+     * @return  the number of indexed documents.
+     */
+
+    public synchronized int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Returns the number of documents which contain a token.
+     *
+     * @param termID  the Term-ID of the token
+     *
+     * @return  the document frequency of the token.
+     */
+
+    public synchronized int getDocumentFrequency(int termID) {
+        return (termID >= 0 && termID < termFrequencies.size()) ? termFrequencies.get(termID).size() : 0;
+    }
+
+    /**
+     * Calculates the TF-IDF values of a token for all documents which contain it, based on the documents indexed so far.
+     *
+     * @param termID  the Term-ID of the token
+     *
+     * @return  the postings of the token with their TF-IDF values.
+     */
+
+    synchronized PostingsBuilder calculateTFIDF(int termID) {
+        PostingsBuilder tfidfValues = new PostingsBuilder();
+
+        if (termID < 0 || termID >= termFrequencies.size()) {
+            return tfidfValues;
+        }
+        PostingsBuilder postings = termFrequencies.get(termID);
+
+        for (int i = 0; i < postings.size(); i++) {
+            int docID = postings.docID(i);
+            double tfidf = TFIDF.calculate((int) postings.value(i), documentLengths[docID], documentCount, postings.size());
+            tfidfValues.put(docID, tfidf);
+        }
+        return tfidfValues;
+    }
+
+    /**
+     * Calculates the posting lists of all tokens at once. The statistics are locked for the whole calculation,
+     * so all posting lists belong to the same set of documents, even if documents are added at the same time.
+     *
+     * @return  the posting lists with the TF-IDF values, indexed by the Term-ID.
+     */
+
+    synchronized Postings[] createPostingLists() {
+        Postings[] postingLists = new Postings[termFrequencies.size()];
+
+        for (int termID = 0; termID < postingLists.length; termID++) {
+            postingLists[termID] = PostingList.from(calculateTFIDF(termID));
+        }
+        return postingLists;
+    }
+
+    /**
+     * @return  the number of Term-IDs which have statistics.
+     */
+
+    public synchronized int getTermCount() {
+        return termFrequencies.size();
+    }
+
+    /**
+     * Calculates the TF-IDF vectors of all indexed documents in one pass over the statistics.
+     * The Term-IDs are visited in ascending order, so the weights of every document are appended in sorted order.
+     *
+     * @return  a map of Document-IDs to the TF-IDF vectors of the documents.
+     */
+
+    public synchronized Map<Integer, SparseVector> createDocumentVectors() {
+        Map<Integer, PostingsBuilder> weights = new HashMap<>();
+
+        for (int termID = 0; termID < termFrequencies.size(); termID++) {
+            PostingsBuilder postings = termFrequencies.get(termID);
+
+            for (int i = 0; i < postings.size(); i++) {
+                int docID = postings.docID(i);
+                double tfidf = TFIDF.calculate((int) postings.value(i), documentLengths[docID], documentCount, postings.size());
+                weights.computeIfAbsent(docID, k -> new PostingsBuilder()).put(termID, tfidf);
+            }
+        }
+
+        Map<Integer, SparseVector> vectors = new HashMap<>();
+        for (Map.Entry<Integer, PostingsBuilder> entry : weights.entrySet()) {
+            vectors.put(entry.getKey(), SparseVector.from(entry.getValue()));
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,76 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The interface "TokenNormalizer" reduces tokens to a normal form after the tokenization, so different forms of
+ * a word are found by the same query token. The normalizer of an index is used for its documents and for every
+ * search query. There are two implementations: The {@link PorterStemmer} cuts the suffixes of english words by
+ * rules and is fast, the {@link Lemmatizer} finds the base form of words with a part-of-speech tagger and is exact.
+ */
+
+public interface TokenNormalizer {
+
+    /**
+     * Normalizes the tokens of a document or query.
+     *
+     * @param tokens  the tokens
+     *
+     * @return  the normalized tokens, one for every token.
+     */
+
+    List<String> normalize(List<String> tokens);
+
+    /**
+     * Normalizes the tokens of several documents. Normalizers, which are faster for batches, override this method.
+     *
+     * @param documents  the tokens of the documents
+     *
+     * @return  the normalized tokens of every document.
+     */
+
+    default List<List<String>> normalizeAll(List<List<String>> documents) {
+        List<List<String>> normalizedDocuments = new ArrayList<>(documents.size());
+        for (List<String> tokens : documents) {
+            normalizedDocuments.add(normalize(tokens));
+        }
+        return normalizedDocuments;
+    }
+
+    /**
+     * @return  the name of the normalizer, which is stored with an index.
+     */
+
+    String getName();
+
+    /**
+     * Creates a normalizer by its name.
+     *
+     * @param name  "porter" for the PorterStemmer, "lemma" for the Lemmatizer or "none"
+     *
+     * @return  the normalizer or null for "none".
+     */
+
+    static TokenNormalizer forName(String name) {
+        switch (name) {
+            case "none":
+                return null;
+            case PorterStemmer.NAME:
+                return new PorterStemmer();
+            case Lemmatizer.NAME:
+                return new Lemmatizer();
+            default:
+                throw new IllegalArgumentException("Unknown token normalizer: " + name);
+        }
+    }
+
+    /**
+     * @param normalizer  a normalizer or null
+     *
+     * @return  the name of the normalizer or "none" for null.
+     */
+
+    static String nameOf(TokenNormalizer normalizer) {
+        return (normalizer != null) ? normalizer.getName() : "none";
+    }
+}
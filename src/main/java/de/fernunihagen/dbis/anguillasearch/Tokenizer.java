@@ -0,0 +1,122 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "Tokenizer" splits a text into lower case tokens and removes the stopwords. It reads the text once,
+ * character by character, and collects the current token in a reused buffer, so no regular expression, no
+ * lower case copy of the text and no Strings for stopwords are created. A token consists of the characters a-z, 0-9
+ * and _ (after the conversion to lower case). An apostrophe between two of these characters belongs to the token,
+ * so contractions like "don't" are removed as stopwords. Other tokens with an apostrophe are split at the apostrophe,
+ * for example "cheese's" into "cheese" and the stopword "s".
+ * A tokenizer is not thread-safe, every thread needs its own tokenizer.
+ */
+
+public final class Tokenizer {
+
+    /**
+     * Receives the tokens of a text. The characters of a token are only valid during the call.
+     */
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+
+        /**
+         * @param chars  the buffer containing the token
+         * @param start  the position of the first character of the token
+         * @param length  the number of characters of the token
+         */
+
+        void accept(char[] chars, int start, int length);
+    }
+
+    // The characters of the current token, already in lower case.
+    private char[] buffer = new char[64];
+    // Positions of the apostrophes in the current token.
+    private int[] apostrophes = new int[4];
+
+    /**
+     * Tokenizes a text.
+     *
+     * @param content  the text
+     *
+     * @return  the tokens which are not stopwords, in the order of the text.
+     */
+
+    public List<String> tokenize(CharSequence content) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(content, (chars, start, length) -> tokens.add(new String(chars, start, length)));
+        return tokens;
+    }
+
+    /**
+     * Tokenizes a text and passes every token, which is not a stopword, to the consumer.
+     *
+     * @param content  the text
+     * @param consumer  the consumer of the tokens
+     */
+
+    public void tokenize(CharSequence content, TokenConsumer consumer) {
+        int contentLength = content.length();
+        int length = 0;
+        int apostropheCount = 0;
+
+        for (int i = 0; i < contentLength; i++) {
+            char c = Character.toLowerCase(content.charAt(i));
+
+            if (isTokenChar(c)) {
+                append(length++, c);
+            } else if (isApostrophe(c) && length > 0 && i + 1 < contentLength
+                    && isTokenChar(Character.toLowerCase(content.charAt(i + 1)))) {
+                if (apostropheCount == apostrophes.length) {
+                    apostrophes = Arrays.copyOf(apostrophes, apostropheCount * 2);
+                }
+                apostrophes[apostropheCount++] = length;
+                append(length++, '\'');
+            } else if (length > 0) {
+                emit(length, apostropheCount, consumer);
+                length = 0;
+                apostropheCount = 0;
+            }
+        }
+        if (length > 0) {
+            emit(length, apostropheCount, consumer);
+        }
+    }
+
+    private void append(int position, char c) {
+        if (position == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[position] = c;
+    }
+
+    private void emit(int length, int apostropheCount, TokenConsumer consumer) {
+        if (Stopwords.isStopword(buffer, 0, length)) {
+            return;
+        }
+        if (apostropheCount == 0) {
+            consumer.accept(buffer, 0, length);
+            return;
+        }
+
+        // The token is no contraction from the stopwords, so its parts are separate tokens.
+        int start = 0;
+        for (int i = 0; i <= apostropheCount; i++) {
+            int end = (i < apostropheCount) ? apostrophes[i] : length;
+            if (!Stopwords.isStopword(buffer, start, end - start)) {
+                consumer.accept(buffer, start, end - start);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isApostrophe(char c) {
+        // The typographic apostrophe is treated like the ASCII apostrophe of the stopwords.
+        return c == '\'' || c == '\u2019';
+    }
+}
@@ -0,0 +1,179 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.*;
+
+/**
+ * The class "TopKCollector" keeps the k best scored documents of a search. The documents are stored in a min-heap
+ * of primitive (Document-ID, score) pairs, so the worst of the best k documents is always on top and can be replaced
+ * in O(log k). Documents with the same score are ordered by their Document-ID, so the result is deterministic.
+ */
+
+public final class TopKCollector {
+
+    private int k;
+    private int[] docIDs;
+    private double[] scores;
+    private int size = 0;
+
+    /**
+     * Creates a collector for the k best documents.
+     *
+     * @param k  the maximum number of documents
+     */
+
+    public TopKCollector(int k) {
+        checkK(k);
+        this.k = k;
+        // The heap grows on demand, so a large k doesn`t allocate memory for documents which are never found.
+        int capacity = Math.min(k, 16);
+        this.docIDs = new int[capacity];
+        this.scores = new double[capacity];
+    }
+
+    private static void checkK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+    }
+
+    /**
+     * Offers a document to the collector. It is only kept if it is better than the worst of the current k documents.
+     *
+     * @param docID  the Document-ID
+     * @param score  the score of the document
+     */
+
+    public void collect(int docID, double score) {
+        if (size < k) {
+            if (size == docIDs.length) {
+                int capacity = (int) Math.min((long) k, 2L * size);
+                docIDs = Arrays.copyOf(docIDs, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            docIDs[size] = docID;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isWorse(scores[0], docIDs[0], score, docID)) {
+            docIDs[0] = docID;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return  true if the collector already contains k documents.
+     */
+
+    public boolean isFull() {
+        return size == k;
+    }
+
+    /**
+     * @return  the score a document must exceed to get into a full collector, or negative infinity if it is not full.
+     */
+
+    public double threshold() {
+        return isFull() ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @return  the number of collected documents.
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all documents, so the collector can be used for the next search.
+     */
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes all documents and sets a new k, so the collector and its heap can be reused by the next search.
+     *
+     * @param k  the maximum number of documents of the next search
+     */
+
+    public void reset(int k) {
+        checkK(k);
+        this.k = k;
+        size = 0;
+    }
+
+    /**
+     * Sorts the collected documents by their score in descending order. The collector is empty afterwards.
+     *
+     * @param resultDocIDs  array for the Document-IDs with at least size() entries
+     * @param resultScores  array for the scores with at least size() entries
+     *
+     * @return  the number of documents.
+     */
+
+    public int drainSorted(int[] resultDocIDs, double[] resultScores) {
+        int count = size;
+
+        // Removing the worst document repeatedly fills the arrays from the back.
+        for (int i = count - 1; i >= 0; i--) {
+            resultDocIDs[i] = docIDs[0];
+            resultScores[i] = scores[0];
+            size--;
+            docIDs[0] = docIDs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return count;
+    }
+
+    /**
+     * @return  true if the first document is worse than the second one.
+     */
+
+    private static boolean isWorse(double score1, int docID1, double score2, int docID2) {
+        int comparison = Double.compare(score1, score2);
+        return comparison < 0 || (comparison == 0 && docID1 > docID2);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isWorse(scores[index], docIDs[index], scores[parent], docIDs[parent])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && isWorse(scores[right], docIDs[right], scores[left], docIDs[left])) {
+                worst = right;
+            }
+            if (!isWorse(scores[worst], docIDs[worst], scores[index], docIDs[index])) {
+                break;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int docID = docIDs[i];
+        docIDs[i] = docIDs[j];
+        docIDs[j] = docID;
+
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -0,0 +1,47 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class "VirtualThreads" creates executors which run every task on its own virtual thread.
+ * Virtual threads are only available since Java 21, but the project is compiled for Java 17. That`s why
+ * the executor is looked up at runtime and a pool of platform threads is used on older Java versions.
+ */
+
+public class VirtualThreads {
+
+    /*
+     * Private constructor is needed to prevent instantiation, because this is a utility class.
+     */
+
+    private VirtualThreads() {
+        throw new UnsupportedOperationException("This class can`t be instantiated");
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for every task. If the running Java version
+     * doesn`t support virtual threads, a fixed pool of daemon threads is returned instead.
+     *
+     * @param name  the name prefix for the threads of the fallback pool
+     * @param fallbackThreads  the number of platform threads used if virtual threads are not available
+     *
+     * @return  an executor for the tasks.
+     */
+
+    public static ExecutorService newExecutor(String name, int fallbackThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // Virtual threads are not available (Java < 21 or preview features disabled).
+            AtomicInteger threadNumber = new AtomicInteger();
+
+            return Executors.newFixedThreadPool(Math.max(1, fallbackThreads), runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
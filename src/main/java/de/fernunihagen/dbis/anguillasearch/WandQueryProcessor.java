@@ -0,0 +1,160 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+/**
+ * The class "WandQueryProcessor" evaluates a query document-at-a-time with the WAND algorithm (Weak AND).
+ * Every token of the query has an upper bound for its contribution to the score of a document and every document
+ * can have a prior score (the weighted PageRank) with a global upper bound. A document is only scored if the sum of
+ * the upper bounds of its tokens can exceed the score of the worst document in the top-k collector. Cursors are
+ * moved past documents which can`t reach that threshold, so most postings of frequent tokens are skipped.
+ * The result is the same as with scoring every document, because the bounds are never lower than the real scores.
+ */
+
+public final class WandQueryProcessor {
+
+    /**
+     * The interface "DocumentScorer" calculates the exact score of a document.
+     */
+
+    public interface DocumentScorer {
+
+        /**
+         * @param docID  the Document-ID
+         *
+         * @return  the part of the score which doesn`t depend on the tokens, for example the weighted PageRank.
+         */
+
+        double prior(int docID);
+
+        /**
+         * Calculates the score of a document. Every cursor which matches the document is positioned on it.
+         *
+         * @param docID  the Document-ID
+         * @param cursors  the cursors of the query tokens in the order of the query
+         *
+         * @return  the score of the document.
+         */
+
+        double score(int docID, PostingCursor[] cursors);
+    }
+
+    // Relative tolerance for the upper bounds, because the scores are summed in another order than the bounds.
+    private static final double BOUND_TOLERANCE = 1e-6;
+
+    private final PostingCursor[] cursors;
+    private final double[] upperBounds;
+    private final double priorUpperBound;
+    // Positions of the cursors, sorted by the Document-ID the cursors are positioned on.
+    private final int[] order;
+    private long scoredDocuments = 0;
+
+    /**
+     * Creates a processor for the cursors of a query. The cursors must not be moved yet.
+     *
+     * @param cursors  the cursors of the query tokens in the order of the query
+     * @param upperBounds  the upper bound of the contribution of each token to the score
+     * @param priorUpperBound  the upper bound of the prior score of all documents
+     */
+
+    public WandQueryProcessor(PostingCursor[] cursors, double[] upperBounds, double priorUpperBound) {
+        if (cursors.length != upperBounds.length) {
+            throw new IllegalArgumentException("Every cursor needs an upper bound");
+        }
+        this.cursors = cursors;
+        this.upperBounds = upperBounds;
+        this.priorUpperBound = priorUpperBound;
+        this.order = new int[cursors.length];
+
+        for (int i = 0; i < cursors.length; i++) {
+            order[i] = i;
+        }
+    }
+
+    /**
+     * Evaluates the query and collects the best documents.
+     *
+     * @param scorer  the scorer which calculates the exact scores
+     * @param topK  the collector for the best documents
+     * @param prune  false to score every matching document without using the upper bounds
+     */
+
+    public void search(DocumentScorer scorer, TopKCollector topK, boolean prune) {
+        for (PostingCursor cursor : cursors) {
+            cursor.next();
+        }
+
+        while (true) {
+            sortCursors();
+            double threshold = prune ? topK.threshold() : Double.NEGATIVE_INFINITY;
+
+            // The pivot is the first cursor at which the sum of the upper bounds can exceed the threshold.
+            int pivot = -1;
+            double bound = priorUpperBound;
+            for (int i = 0; i < order.length; i++) {
+                if (cursors[order[i]].docID() == PostingCursor.NO_MORE_DOCS) {
+                    break;
+                }
+                bound += upperBounds[order[i]];
+                if (exceeds(bound, threshold)) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                return;
+            }
+
+            int pivotDocID = cursors[order[pivot]].docID();
+
+            if (cursors[order[0]].docID() == pivotDocID) {
+                // All cursors before the pivot are on the pivot document, so it may be good enough.
+                double documentBound = scorer.prior(pivotDocID);
+                for (int i = 0; i < order.length && cursors[order[i]].docID() == pivotDocID; i++) {
+                    documentBound += upperBounds[order[i]];
+                }
+
+                if (exceeds(documentBound, threshold)) {
+                    topK.collect(pivotDocID, scorer.score(pivotDocID, cursors));
+                    scoredDocuments++;
+                }
+                for (int i = 0; i < order.length && cursors[order[i]].docID() == pivotDocID; i++) {
+                    cursors[order[i]].next();
+                }
+            } else {
+                // No document before the pivot document can reach the threshold, so the cursors skip to it.
+                for (int i = 0; i < pivot; i++) {
+                    cursors[order[i]].advance(pivotDocID);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return  the number of documents which were scored exactly.
+     */
+
+    public long getScoredDocuments() {
+        return scoredDocuments;
+    }
+
+    private static boolean exceeds(double bound, double threshold) {
+        return bound + Math.abs(bound) * BOUND_TOLERANCE > threshold;
+    }
+
+    /**
+     * Insertion sort, because queries only have a few tokens and the order changes only slightly between the steps.
+     */
+
+    private void sortCursors() {
+        for (int i = 1; i < order.length; i++) {
+            int current = order[i];
+            int docID = cursors[current].docID();
+            int j = i - 1;
+
+            while (j >= 0 && cursors[order[j]].docID() > docID) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+}
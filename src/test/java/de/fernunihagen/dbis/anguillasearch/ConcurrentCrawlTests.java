@@ -0,0 +1,126 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.jsoup.Jsoup;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the concurrent crawl. The intranet is a small link graph with cycles, which is served by a local
+ * HTTP server that counts the requests of every page.
+ */
+
+class ConcurrentCrawlTests {
+
+    private static final int PAGE_COUNT = 30;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+
+            // Every page links to three other pages, some of them back, and the seed page links to two pages.
+            StringBuilder html = new StringBuilder("<html><head><title>" + path + "</title></head><body>");
+            if (path.equals("/seed")) {
+                html.append("<p>seed</p><a href='/page0'>0</a><a href='/page15'>15</a>");
+            } else {
+                int page = Integer.parseInt(path.substring("/page".length()));
+                html.append("<p>cheese number ").append(page).append("</p>");
+                for (int target : new int[] {(page + 1) % PAGE_COUNT, (page * 7) % PAGE_COUNT, (page + 13) % PAGE_COUNT}) {
+                    html.append("<a href='/page").append(target).append("'>").append(target).append("</a>");
+                }
+            }
+            byte[] bytes = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void concurrentCrawlTerminates() {
+        Crawler crawler = assertTimeoutPreemptively(Duration.ofSeconds(60), () -> crawl(8, 4));
+
+        assertEquals(PAGE_COUNT + 1, crawler.getCrawledPages().size());
+        assertEquals(PAGE_COUNT + 1, crawler.getReverseIndex().getSnapshot().getDocumentCount());
+        assertEquals(1, crawler.getReverseIndex().searchQuery("seed", false).size());
+    }
+
+    @Test
+    void everyPageIsFetchedOnce() throws IOException {
+        // Most pages are linked from several pages, which are fetched at the same time.
+        crawl(8, 8);
+
+        assertEquals(PAGE_COUNT + 1, requests.size());
+        for (Map.Entry<String, AtomicInteger> entry : requests.entrySet()) {
+            assertEquals(1, entry.getValue().get(), entry.getKey() + " was fetched more than once");
+        }
+
+        // The sequential crawl fetches every page once, too.
+        requests.clear();
+        crawl(1, 1);
+        assertEquals(PAGE_COUNT + 1, requests.size());
+        assertEquals(PAGE_COUNT + 1, requests.values().stream().mapToInt(AtomicInteger::get).sum());
+    }
+
+    @Test
+    void failedFetchStopsCrawl() {
+        // The request of one page fails with an unchecked exception, like a bad url does.
+        Crawler crawler = new Crawler();
+        crawler.setConcurrency(8, 4);
+        crawler.setConnector(url -> {
+            if (url.endsWith("/page7")) {
+                throw new IllegalArgumentException("Stub fetch of " + url);
+            }
+            return Jsoup.connect(url);
+        });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> assertTimeoutPreemptively(Duration.ofSeconds(60), () -> crawl(crawler)));
+        assertEquals("Stub fetch of " + baseUrl + "/page7", e.getMessage());
+    }
+
+    private Crawler crawl(int maxConcurrency, int maxConcurrencyPerHost) throws IOException {
+        Crawler crawler = new Crawler();
+        crawler.setConcurrency(maxConcurrency, maxConcurrencyPerHost);
+        return crawl(crawler);
+    }
+
+    private Crawler crawl(Crawler crawler) throws IOException {
+        JsonArray seeds = new JsonArray();
+        seeds.add(baseUrl + "/seed");
+        JsonObject json = new JsonObject();
+        json.add("Seed-URLs", seeds);
+
+        crawler.crawl(json);
+        return crawler;
+    }
+}
@@ -59,6 +59,22 @@ class CosineTests {
         assertTrue(Math.abs(Cosine.cosineSimilarity(vektor1, vektor2) - 0.6364) < 0.0001);
     }
 
+    @Test
+    void zeroMagnitude() {
+        // A vector without any weight isn`t similar to any vector, the result must not be NaN
+        Vector zero = ArrayToVektor(new double[] { 0.0, 0.0, 0.0 });
+        Vector vektor = ArrayToVektor(new double[] { 0.1, 0.2, 0.3 });
+        SparseVector empty = SparseVector.EMPTY;
+        SparseVector sparse = new SparseVector(new int[] { 0, 1 }, new double[] { 3.0, 4.0 });
+
+        assertEquals(0.0, Cosine.cosineSimilarity(zero, vektor));
+        assertEquals(0.0, Cosine.cosineSimilarity(vektor, zero));
+        assertEquals(0.0, Cosine.cosineSimilarity(zero, zero));
+        assertEquals(0.0, Cosine.cosineSimilarity(empty, sparse));
+        assertEquals(0.0, Cosine.cosineSimilarity(sparse, empty));
+        assertEquals(0.0, Cosine.cosineSimilarity(1.0, 0.0, 2.0));
+    }
+
     /** 
      * Converts an array of doubles into a Vektor
      * 
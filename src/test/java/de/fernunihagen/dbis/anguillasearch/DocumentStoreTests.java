@@ -0,0 +1,57 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the columnar document store.
+ */
+
+class DocumentStoreTests {
+
+    @Test
+    void storeContainsPublishedPages() {
+        Crawler crawler = IndexSegmentTests.createCrawler();
+        DocumentStore store = crawler.getDocumentStore();
+
+        assertEquals(crawler.getCrawledPages().size(), store.size());
+        for (PageData page : crawler.getCrawledPages()) {
+            int docID = store.getDocID(page.getURL());
+
+            assertEquals(page.getID(), docID);
+            assertEquals(page.getURL(), store.getURL(docID));
+            assertEquals(page.getTitle(), store.getTitle(docID));
+            assertEquals(page.getHeader(), store.getHeader(docID));
+            assertEquals(page.getLinks(), new HashSet<>(store.getLinks(docID)));
+        }
+    }
+
+    @Test
+    void missingDocuments() {
+        DocumentRegistry documents = new DocumentRegistry();
+        List<PageData> pages = new ArrayList<>();
+        for (String url : new String[] {"http://a", "http://removed", "http://über"}) {
+            PageData page = new PageData();
+            page.setURL(url);
+            page.setTitle("Title of " + url);
+            page.setID(documents.register(url));
+            pages.add(page);
+        }
+        pages.set(1, null);
+
+        DocumentStore store = DocumentStore.of(documents, pages);
+
+        assertEquals(2, store.size());
+        assertFalse(store.contains(1));
+        assertEquals(-1, store.getDocID("http://removed"));
+        assertEquals(-1, store.getDocID("http://unknown"));
+        assertNull(store.getTitle(7));
+        assertEquals(List.of(), store.getLinks(1));
+        assertArrayEquals(new String[] {"Title of http://über", null, "Title of http://a"}, store.getTitles(new int[] {2, 1, 0}));
+        assertEquals(0, DocumentStore.EMPTY.size());
+    }
+}
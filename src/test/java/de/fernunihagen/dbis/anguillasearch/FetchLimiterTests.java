@@ -0,0 +1,87 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the limits of concurrent fetches. The fetches are stubs, which only count how many of them run.
+ */
+
+class FetchLimiterTests {
+
+    @Test
+    void fetchesAreLimitedPerHostAndGlobally() throws Exception {
+        FetchLimiter limiter = new FetchLimiter(3, 2);
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        AtomicInteger runningTotal = new AtomicInteger();
+        AtomicInteger maxRunningTotal = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        try {
+            List<Future<String>> fetches = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                String host = "host" + (i % 3);
+                String url = "http://" + host + "/page" + i;
+                fetches.add(executor.submit(() -> limiter.withPermits(url, () -> {
+                    int hostCount = running.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+                    maxRunning.computeIfAbsent(host, h -> new AtomicInteger()).accumulateAndGet(hostCount, Math::max);
+                    maxRunningTotal.accumulateAndGet(runningTotal.incrementAndGet(), Math::max);
+                    try {
+                        pause();
+                    } finally {
+                        runningTotal.decrementAndGet();
+                        running.get(host).decrementAndGet();
+                    }
+                    return url;
+                })));
+            }
+            for (int i = 0; i < fetches.size(); i++) {
+                assertEquals("http://host" + (i % 3) + "/page" + i, fetches.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(3, maxRunning.size());
+        for (AtomicInteger max : maxRunning.values()) {
+            assertTrue(max.get() <= 2, "Host limit exceeded: " + max.get());
+        }
+        assertTrue(maxRunningTotal.get() <= 3, "Global limit exceeded: " + maxRunningTotal.get());
+        // The fetches really ran at the same time, so the limits were reached.
+        assertEquals(3, maxRunningTotal.get());
+    }
+
+    @Test
+    void failedFetchReleasesPermits() throws IOException {
+        FetchLimiter limiter = new FetchLimiter(1, 1);
+
+        // The permits of a failed fetch are released, so the next fetches don`t wait forever.
+        for (int i = 0; i < 3; i++) {
+            IOException e = assertThrows(IOException.class, () -> limiter.withPermits("http://host/broken", () -> {
+                throw new IOException("broken");
+            }));
+            assertEquals("broken", e.getMessage());
+        }
+        assertEquals("ok", limiter.withPermits("http://host/ok", () -> "ok"));
+    }
+
+    private static void pause() throws InterruptedIOException {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the magnitudes stored in the Forward Index.
+ */
+
+class ForwardIndexTests {
+
+    @Test
+    void storedMagnitudesMatchVectors() {
+        Crawler crawler = IndexSegmentTests.createCrawler();
+        ForwardIndex forwardIndex = crawler.getForwardIndex();
+
+        for (PageData page : crawler.getCrawledPages()) {
+            SparseVector vektor = forwardIndex.getForwardIndex(page.getID());
+            double sum = 0.0;
+            for (int i = 0; i < vektor.size(); i++) {
+                sum += vektor.value(i) * vektor.value(i);
+            }
+
+            assertTrue(vektor.size() > 0);
+            assertEquals(Math.sqrt(sum), forwardIndex.getMagnitude(page.getID()), 1e-12);
+        }
+    }
+
+    @Test
+    void replacedVectorHasNewMagnitude() {
+        ForwardIndex forwardIndex = new ForwardIndex();
+        forwardIndex.createForwardIndex(2, new SparseVector(new int[] {0, 1}, new double[] {3.0, 4.0}));
+        assertEquals(5.0, forwardIndex.getMagnitude(2), 0.0);
+
+        forwardIndex.createForwardIndex(2, new SparseVector(new int[] {1}, new double[] {2.0}));
+        assertEquals(2.0, forwardIndex.getMagnitude(2), 0.0);
+    }
+
+    @Test
+    void documentWithoutVectorHasZeroMagnitude() {
+        ForwardIndex forwardIndex = new ForwardIndex();
+        forwardIndex.createForwardIndex(1, new SparseVector(new int[] {0}, new double[] {1.0}));
+
+        assertEquals(0.0, forwardIndex.getMagnitude(0), 0.0);
+        assertEquals(0.0, forwardIndex.getMagnitude(5), 0.0);
+        assertEquals(0.0, forwardIndex.getMagnitude(-1), 0.0);
+    }
+}
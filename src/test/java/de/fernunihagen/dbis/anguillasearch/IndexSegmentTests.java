@@ -0,0 +1,114 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for writing and opening index segments.
+ */
+
+class IndexSegmentTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void openedSegmentReturnsSameSearchResults() throws IOException {
+        Crawler crawler = createCrawler();
+        Path path = directory.resolve("index.segment");
+
+        IndexSegment.write(path, crawler);
+        IndexSegment segment = IndexSegment.open(path);
+
+        for (String query : new String[] {"cheese", "brie goat", "aged swiss cheese", "unknown"}) {
+            for (boolean useCosineSimilarity : new boolean[] {false, true}) {
+                List<Map.Entry<String, Double>> expected = crawler.getReverseIndex().searchQuery(query, useCosineSimilarity);
+                List<Map.Entry<String, Double>> actual = segment.getReverseIndex().searchQuery(query, useCosineSimilarity);
+
+                assertEquals(expected, actual);
+                assertEquals(crawler.getReverseIndex().searchQuery(query, useCosineSimilarity, 2), 
+                    segment.getReverseIndex().searchQuery(query, useCosineSimilarity, 2));
+            }
+        }
+
+        List<PageData> pages = crawler.getCrawledPages();
+        assertEquals(pages.size(), segment.getPages().size());
+        for (PageData page : pages) {
+            PageData loaded = segment.getPages().get(page.getID());
+
+            assertEquals(page.getURL(), loaded.getURL());
+            assertEquals(page.getTitle(), loaded.getTitle());
+            assertEquals(page.getHeader(), loaded.getHeader());
+            assertEquals(page.getLinks(), loaded.getLinks());
+            assertEquals(page.getPageRank(), segment.getPageRankTable().getScore(page.getURL()), 0.0);
+            assertEquals(crawler.getForwardIndex().getMagnitude(page.getID()), 
+                segment.getForwardIndex().getMagnitude(page.getID()), 0.0);
+        }
+    }
+
+    @Test
+    void segmentCantBeChanged() throws IOException {
+        Path path = directory.resolve("index.segment");
+        IndexSegment.write(path, createCrawler());
+
+        ReverseIndex reverseIndex = IndexSegment.open(path).getReverseIndex();
+
+        assertThrows(IllegalStateException.class, () -> reverseIndex.addToken("cheese", "http://new", 1.0));
+    }
+
+    @Test
+    void segmentKeepsTokenNormalizer() throws IOException {
+        Crawler crawler = new Crawler();
+        crawler.getReverseIndex().setNormalizer(new PorterStemmer());
+        crawler.processPage("http://cheesy/a", Jsoup.parse("<html><body><p>aged cheeses</p></body></html>", "http://cheesy/a"));
+        crawler.calculateTFIDF();
+        crawler.calculatePageRank();
+        Path path = directory.resolve("stemmed.segment");
+
+        IndexSegment.write(path, crawler);
+        ReverseIndex reverseIndex = IndexSegment.open(path).getReverseIndex();
+
+        assertEquals("porter", reverseIndex.getNormalizer().getName());
+        assertEquals(1, reverseIndex.searchQuery("cheese", false, 10).size());
+
+        Path plainPath = directory.resolve("index.segment");
+        IndexSegment.write(plainPath, createCrawler());
+        assertNull(IndexSegment.open(plainPath).getReverseIndex().getNormalizer());
+    }
+
+    @Test
+    void invalidSegmentIsRejected() throws IOException {
+        Path path = directory.resolve("invalid.segment");
+        Files.write(path, new byte[64]);
+
+        assertThrows(IOException.class, () -> IndexSegment.open(path));
+    }
+
+    static Crawler createCrawler() {
+        Crawler crawler = new Crawler();
+        String[][] pages = {
+            {"http://cheesy/a", "Cheese", "<p>cheese brie cheese</p><a href='http://cheesy/b'>b</a>"},
+            {"http://cheesy/b", "Brie", "<p>brie goat aged</p><a href='http://cheesy/c'>c</a>"},
+            {"http://cheesy/c", "Swiss", "<p>aged swiss cheese goat</p><a href='http://cheesy/a'>a</a>"},
+            {"http://cheesy/d", "Goat", "<p>goat goat</p><a href='http://cheesy/a'>a</a><a href='http://cheesy/c'>c</a>"},
+        };
+
+        for (String[] page : pages) {
+            String html = "<html><head><title>" + page[1] + "</title></head><body><h1>" + page[1] + "</h1>" 
+                + page[2] + "</body></html>";
+            crawler.processPage(page[0], Jsoup.parse(html, page[0]));
+        }
+        crawler.calculateTFIDF();
+        crawler.calculatePageRank();
+        return crawler;
+    }
+}
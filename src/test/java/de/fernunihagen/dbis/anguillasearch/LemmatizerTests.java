@@ -0,0 +1,152 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import com.google.gson.JsonObject;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * Unit tests for the cached lemmatization.
+ */
+
+class LemmatizerTests {
+
+    @Test
+    void wordsAreLemmatized() {
+        Lemmatizer lemmatizer = new Lemmatizer();
+
+        assertEquals(List.of("cheese", "mouse", "cheese", "goose"),
+            lemmatizer.lemmatize(List.of("cheeses", "mice", "cheese", "geese")));
+    }
+
+    @Test
+    void repeatedWordsAreCached() {
+        Lemmatizer lemmatizer = new Lemmatizer();
+        List<String> tokens = List.of("goats", "cheeses", "goats");
+
+        List<String> lemmas = lemmatizer.lemmatize(tokens);
+        assertEquals(2, lemmatizer.getCacheMisses());
+        assertEquals(2, lemmatizer.getCacheSize());
+
+        assertEquals(lemmas, lemmatizer.lemmatize(tokens));
+        assertEquals(2, lemmatizer.getCacheMisses());
+        assertEquals(2, lemmatizer.getCacheHits());
+    }
+
+    @Test
+    void cacheIsBounded() {
+        Lemmatizer lemmatizer = new Lemmatizer(3);
+
+        List<String> lemmas = lemmatizer.lemmatize(List.of("cows", "goats", "cheeses", "mice", "wheels"));
+
+        assertEquals(List.of("cow", "goat", "cheese", "mouse", "wheel"), lemmas);
+        assertEquals(3, lemmatizer.getCacheSize());
+    }
+
+    @Test
+    void leastRecentlyUsedWordIsEvicted() {
+        Lemmatizer lemmatizer = new Lemmatizer(3);
+        lemmatizer.lemmatize(List.of("cows", "goats", "cheeses"));
+        lemmatizer.lemmatize(List.of("cows"));
+
+        // "goats" was used least recently, so it makes room for "mice".
+        lemmatizer.lemmatize(List.of("mice"));
+        long misses = lemmatizer.getCacheMisses();
+        assertEquals(List.of("cow", "cheese", "mouse"), lemmatizer.lemmatize(List.of("cows", "cheeses", "mice")));
+        assertEquals(misses, lemmatizer.getCacheMisses());
+
+        assertEquals(List.of("goat"), lemmatizer.lemmatize(List.of("goats")));
+        assertEquals(misses + 1, lemmatizer.getCacheMisses());
+        assertEquals(3, lemmatizer.getCacheSize());
+    }
+
+    @Test
+    void cachedLemmasMatchLemmasInContext() throws IOException {
+        // The lemmas of every document, tagged in the full token sequence of the document like before the cache.
+        Properties props = new Properties();
+        props.setProperty("annotators", "tokenize, ssplit, pos, lemma");
+        props.setProperty("tokenize.whitespace", "true");
+        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+        ReverseIndex reverseIndex = new ReverseIndex();
+        Lemmatizer lemmatizer = new Lemmatizer();
+
+        List<String> contents = new ArrayList<>();
+        for (JsonObject page : Utils.parseAllJSONFiles(Optional.of("src/test/resources/tf-idf/pages"))) {
+            contents.add(page.get("title").getAsString() + " " + page.get("headings").getAsString() + " "
+                + page.get("paragraphs").getAsString());
+        }
+        contents.add("The farmers were milking the cows in the morning and the milk was carried to the dairy, "
+            + "where the cheesemakers heated it, added rennet and cut the curds into small pieces.");
+        contents.add("Aged cheeses are stored in caves. The wheels are turned and brushed every week, so the rinds "
+            + "are growing slowly while the flavours are becoming stronger and the textures harder.");
+        contents.add("She saw the goats climbing the rocks. Their kids were playing near the fences and the herders "
+            + "were watching them, counting the animals before leading them back to the stables.");
+        contents.add("Visitors tasted the soft cheeses and bought several pieces. The shop sells fresh butter, "
+            + "yoghurt and cream, and the owners are planning to open a second store next year.");
+
+        int tokenCount = 0;
+        int differentLemmas = 0;
+        for (String content : contents) {
+            List<String> tokens = reverseIndex.tokenizeContent(content);
+            Annotation document = new Annotation(String.join(" ", tokens));
+            pipeline.annotate(document);
+            List<String> expected = new ArrayList<>();
+            for (CoreLabel token : document.get(CoreAnnotations.TokensAnnotation.class)) {
+                expected.add(token.get(CoreAnnotations.LemmaAnnotation.class).toLowerCase(Locale.ROOT));
+            }
+
+            List<String> lemmas = lemmatizer.lemmatize(tokens);
+            assertEquals(expected.size(), lemmas.size());
+            for (int i = 0; i < lemmas.size(); i++) {
+                if (!expected.get(i).equals(lemmas.get(i))) {
+                    differentLemmas++;
+                }
+            }
+            tokenCount += tokens.size();
+        }
+
+        // Tagging every word once without its neighbours changes at most a few lemmas of ambiguous words.
+        assertTrue(tokenCount > 80);
+        assertTrue(differentLemmas <= tokenCount / 20, differentLemmas + " of " + tokenCount + " lemmas differ");
+    }
+
+    @Test
+    void batchOfDocuments() {
+        Lemmatizer lemmatizer = new Lemmatizer();
+        List<List<String>> documents = List.of(List.of("cows", "milk"), List.of(), List.of("goats", "cows"));
+
+        assertEquals(List.of(List.of("cow", "milk"), List.of(), List.of("goat", "cow")), lemmatizer.lemmatizeAll(documents));
+        assertEquals(3, lemmatizer.getCacheMisses());
+    }
+
+    @Test
+    void lemmatizedIndexFindsOtherForms() {
+        ReverseIndex reverseIndex = new ReverseIndex();
+        reverseIndex.setNormalizer(new Lemmatizer());
+        JsonObject document = new JsonObject();
+        document.addProperty("url", "http://cheesy/goat");
+        document.addProperty("title", "Goats");
+        document.addProperty("headings", "Cheeses");
+        document.addProperty("paragraphs", "Goats are giving milk for many cheeses.");
+        JsonObject other = new JsonObject();
+        other.addProperty("url", "http://cheesy/cow");
+        other.addProperty("title", "Cow");
+        other.addProperty("headings", "Milk");
+        other.addProperty("paragraphs", "Cows are giving milk.");
+
+        reverseIndex.processDocuments(List.of(document, other));
+
+        List<Map.Entry<String, Double>> results = reverseIndex.searchQuery("goat cheese", false, 10);
+        assertEquals(1, results.size());
+        assertEquals("http://cheesy/goat", results.get(0).getKey());
+        assertTrue(reverseIndex.getTokenInfo("cheese").containsKey("http://cheesy/goat"));
+        assertFalse(reverseIndex.getTokenInfo("cheeses").containsKey("http://cheesy/goat"));
+    }
+}
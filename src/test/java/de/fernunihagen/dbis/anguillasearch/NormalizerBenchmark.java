@@ -0,0 +1,101 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.io.IOException;
+import java.util.*;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Benchmark, which compares the indexing throughput and the recall of the token normalizers on the intranets
+ * in the folder "intranet". Every intranet is crawled once, then its pages are indexed again with every normalizer.
+ * The recall is the part of the Query-URLs of an intranet, which are found by a search for its Query-Token.
+ * It is not executed by the unit tests, needs the intranets to be reachable and can be started with:
+ * java -cp target/classes:target/test-classes:dependencies de.fernunihagen.dbis.anguillasearch.NormalizerBenchmark
+ */
+
+public class NormalizerBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<JsonObject> intranets = Utils.parseAllJSONFiles(Optional.of("intranet"));
+        List<List<JsonObject>> documents = new ArrayList<>();
+        long tokenCount = 0;
+
+        for (JsonObject intranet : intranets) {
+            Crawler crawler = new Crawler();
+            crawler.crawl(intranet);
+
+            // The tokens are joined again, so they are indexed like the content of the pages.
+            List<JsonObject> pages = new ArrayList<>();
+            for (PageData page : crawler.getCrawledPages()) {
+                JsonObject document = new JsonObject();
+                document.addProperty("url", page.getURL());
+                document.addProperty("title", "");
+                document.addProperty("headings", "");
+                document.addProperty("paragraphs", String.join(" ", page.getTokens()));
+                pages.add(document);
+                tokenCount += page.getTokens().size();
+            }
+            documents.add(pages);
+        }
+        System.out.printf("%d intranets, %d tokens%n", intranets.size(), tokenCount);
+
+        // The CoreNLP models are loaded before the measurement.
+        new Lemmatizer().lemmatize(List.of("cheeses"));
+
+        for (String name : new String[] {"none", PorterStemmer.NAME, Lemmatizer.NAME}) {
+            long best = Long.MAX_VALUE;
+            double recall = 0.0;
+            int results = 0;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                // A new normalizer per round, so the Lemmatizer starts with an empty cache.
+                TokenNormalizer normalizer = TokenNormalizer.forName(name);
+                long time = 0;
+                recall = 0.0;
+                results = 0;
+
+                for (int i = 0; i < intranets.size(); i++) {
+                    ReverseIndex reverseIndex = new ReverseIndex();
+                    reverseIndex.setNormalizer(normalizer);
+
+                    long start = System.nanoTime();
+                    reverseIndex.processDocuments(documents.get(i));
+                    time += System.nanoTime() - start;
+
+                    recall += recall(reverseIndex, intranets.get(i));
+                    results += reverseIndex.searchQuery(query(intranets.get(i)), false).size();
+                }
+                best = Math.min(best, time);
+            }
+            System.out.printf("%-6s: %8.0f tokens per ms, recall %.3f, %d results%n",
+                name, tokenCount / (best / 1e6), recall / intranets.size(), results);
+        }
+    }
+
+    private static double recall(ReverseIndex reverseIndex, JsonObject intranet) {
+        Set<String> found = new HashSet<>();
+        for (Map.Entry<String, Double> result : reverseIndex.searchQuery(query(intranet), false)) {
+            found.add(result.getKey());
+        }
+
+        JsonArray queryURLs = intranet.getAsJsonArray("Query-URLs");
+        int relevant = 0;
+        for (int i = 0; i < queryURLs.size(); i++) {
+            if (found.contains(queryURLs.get(i).getAsString())) {
+                relevant++;
+            }
+        }
+        return (double) relevant / queryURLs.size();
+    }
+
+    private static String query(JsonObject intranet) {
+        JsonArray tokens = intranet.getAsJsonArray("Query-Token");
+        List<String> query = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            query.add(tokens.get(i).getAsString());
+        }
+        return String.join(" ", query);
+    }
+}
@@ -0,0 +1,207 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the PageRank engine on small link graphs, which don`t need the intranet.
+ */
+
+class PageRankEngineTests {
+
+    @Test
+    void cycleHasUniformPageRank() {
+        // a -> b -> c -> a
+        List<PageData> pages = createPages(new String[][] {{"b"}, {"c"}, {"a"}});
+
+        double[] ranks = new PageRankEngine(LinkGraph.fromPages(pages), 0.85, 0.0001).calculate();
+
+        for (double rank : ranks) {
+            assertEquals(1.0 / 3, rank, 0.0001);
+        }
+    }
+
+    @Test
+    void danglingPagesKeepSumOfPageRank() {
+        // d has no outgoing links
+        List<PageData> pages = createPages(new String[][] {{"b", "d"}, {"c"}, {"a", "d"}, {}});
+
+        double[] ranks = new PageRankEngine(LinkGraph.fromPages(pages), 0.85, 0.0001).calculate();
+
+        double sum = 0.0;
+        for (double rank : ranks) {
+            sum += rank;
+        }
+        assertTrue(Math.abs(sum - 1.0) < 0.001);
+        assertTrue(ranks[3] > ranks[1]);
+    }
+
+    @Test
+    void pageWithoutInboundLinks() {
+        // Nobody links to a, so it only gets the rank source.
+        List<PageData> pages = createPages(new String[][] {{"b"}, {"c"}, {"b"}});
+
+        double[] ranks = new PageRankEngine(LinkGraph.fromPages(pages), 0.85, 0.0001).calculate();
+
+        assertEquals((1.0 - 0.85) / 3, ranks[0], 0.0001);
+    }
+
+    @Test
+    void linksToUnknownPagesAreIgnored() {
+        List<PageData> pages = createPages(new String[][] {{"b", "x"}, {"a", "y"}});
+
+        LinkGraph graph = LinkGraph.fromPages(pages);
+
+        assertEquals(2, graph.linkCount());
+        assertEquals(1, graph.getOutDegree(0));
+    }
+
+    @Test
+    void parallelCalculationIsStable() {
+        // Random graph with 200 pages, dangling pages included.
+        Random random = new Random(42);
+        String[][] links = new String[200][];
+        for (int i = 0; i < links.length; i++) {
+            links[i] = new String[random.nextInt(4)];
+            for (int j = 0; j < links[i].length; j++) {
+                links[i][j] = "page" + random.nextInt(links.length);
+            }
+        }
+        List<PageData> pages = createPages(links);
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).setURL("page" + i);
+        }
+        LinkGraph graph = LinkGraph.fromPages(pages);
+
+        double[] sequential = new PageRankEngine(graph, 0.85, 0.0001).calculate();
+        double[] parallel = new PageRankEngine(graph, 0.85, 0.0001).calculateParallel(4);
+        double[] parallelAgain = new PageRankEngine(graph, 0.85, 0.0001).calculateParallel(4);
+
+        assertArrayEquals(parallel, parallelAgain);
+        assertArrayEquals(sequential, new PageRankEngine(graph, 0.85, 0.0001).calculateParallel(1));
+        assertArrayEquals(sequential, parallel, 1e-12);
+    }
+
+    @Test
+    void incrementalUpdateOfUnchangedGraph() {
+        LinkGraph graph = LinkGraph.fromPages(createRandomPages(new Random(7), 200));
+        double[] ranks = new PageRankEngine(graph, 0.85, 0.0001).calculate();
+
+        PageRankEngine engine = new PageRankEngine(graph, 0.85, 0.0001);
+        double[] updated = engine.calculateIncremental(ranks);
+
+        // One sweep shows that the earlier scores are still good enough.
+        assertEquals(1, engine.getIterations());
+        assertEquals(0, engine.getPushes());
+        assertArrayEquals(ranks, updated, 1e-12);
+    }
+
+    @Test
+    void incrementalUpdateMatchesNewCalculation() {
+        List<PageData> pages = createRandomPages(new Random(7), 20000);
+        double[] ranks = new PageRankEngine(LinkGraph.fromPages(pages), 0.85, 0.0001).calculate();
+
+        // A few pages get new links.
+        pages.get(3).addLink("page17");
+        pages.get(250).addLink("page3");
+        pages.get(19999).addLink("page1000");
+        LinkGraph graph = LinkGraph.fromPages(pages);
+
+        PageRankEngine fullEngine = new PageRankEngine(graph, 0.85, 0.0001);
+        double[] expected = fullEngine.calculate();
+        PageRankEngine engine = new PageRankEngine(graph, 0.85, 0.0001);
+        double[] updated = engine.calculateIncremental(ranks);
+
+        double differenz = 0.0;
+        for (int page = 0; page < expected.length; page++) {
+            differenz += Math.abs(expected[page] - updated[page]);
+        }
+        assertTrue(differenz < 0.001, "Difference " + differenz);
+        assertTrue(engine.getResidual() < 0.0001);
+
+        // The sweeps and pushes of the update visit far fewer pages than the full calculation.
+        long visitedPages = (long) engine.getIterations() * pages.size() + engine.getPushes();
+        long fullVisitedPages = (long) fullEngine.getIterations() * pages.size();
+        assertTrue(visitedPages * 10 < fullVisitedPages, visitedPages + " of " + fullVisitedPages + " pages visited");
+    }
+
+    @Test
+    void incrementalUpdateEndsAfterMaxPushRounds() {
+        List<PageData> pages = createRandomPages(new Random(9), 2000);
+        double[] ranks = new PageRankEngine(LinkGraph.fromPages(pages), 0.85, 0.0001).calculate();
+        pages.get(5).addLink("page700");
+        pages.get(1200).addLink("page5");
+        LinkGraph graph = LinkGraph.fromPages(pages);
+        double[] expected = new PageRankEngine(graph, 0.85, 1e-10).calculate();
+
+        // A single round of pushes is not enough, so the update continues with the power iteration.
+        PageRankEngine engine = new PageRankEngine(graph, 0.85, 1e-10);
+        engine.setMaxPushRounds(1);
+        double[] updated = engine.calculateIncremental(ranks);
+
+        assertTrue(engine.getIterations() > 1);
+        assertTrue(engine.getPushes() > 0);
+        assertTrue(engine.getResidual() < 1e-10);
+        assertArrayEquals(expected, updated, 1e-9);
+    }
+
+    @Test
+    void incrementalUpdateWithTinyEpsilonEnds() {
+        List<PageData> pages = createRandomPages(new Random(11), 5000);
+        double[] ranks = new PageRankEngine(LinkGraph.fromPages(pages), 0.85, 0.0001).calculate();
+        pages.get(17).addLink("page4000");
+        LinkGraph graph = LinkGraph.fromPages(pages);
+
+        // A tiny epsilon needs many pushes, whose rounding errors must not keep the update from ending.
+        PageRankEngine engine = new PageRankEngine(graph, 0.85, 1e-13);
+        double[] updated = engine.calculateIncremental(ranks);
+        assertTrue(engine.getResidual() < 1e-13);
+
+        // One more update of the result finds nothing to push.
+        PageRankEngine check = new PageRankEngine(graph, 0.85, 1e-12);
+        check.calculateIncremental(updated);
+        assertEquals(0, check.getPushes());
+    }
+
+    static List<PageData> createRandomPages(Random random, int pageCount) {
+        List<PageData> pages = new ArrayList<>();
+
+        for (int i = 0; i < pageCount; i++) {
+            PageData page = new PageData();
+            page.setURL("page" + i);
+            int linkCount = random.nextInt(4);
+            for (int j = 0; j < linkCount; j++) {
+                page.addLink("page" + random.nextInt(pageCount));
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * Creates pages named "a", "b", "c", ... with the given links.
+     *
+     * @param links  the links of each page
+     *
+     * @return  the list of pages
+     */
+
+    static List<PageData> createPages(String[][] links) {
+        List<PageData> pages = new ArrayList<>();
+
+        for (int i = 0; i < links.length; i++) {
+            PageData page = new PageData();
+            page.setURL(String.valueOf((char) ('a' + i)));
+            for (String link : links[i]) {
+                page.addLink(link);
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,83 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import com.google.gson.JsonObject;
+
+/**
+ * Unit tests for the Porter stemmer and the normalization of the index.
+ */
+
+class PorterStemmerTests {
+
+    @Test
+    void examplesOfTheAlgorithm() {
+        PorterStemmer stemmer = new PorterStemmer();
+        String[][] examples = {
+            {"caresses", "caress"}, {"ponies", "poni"}, {"ties", "ti"}, {"caress", "caress"}, {"cats", "cat"},
+            {"feed", "feed"}, {"agreed", "agre"}, {"plastered", "plaster"}, {"bled", "bled"}, {"motoring", "motor"},
+            {"sing", "sing"}, {"conflated", "conflat"}, {"troubled", "troubl"}, {"sized", "size"}, {"hopping", "hop"},
+            {"tanned", "tan"}, {"falling", "fall"}, {"hissing", "hiss"}, {"fizzed", "fizz"}, {"failing", "fail"},
+            {"filing", "file"}, {"happy", "happi"}, {"sky", "sky"}, {"relational", "relat"}, {"conditional", "condit"},
+            {"rational", "ration"}, {"valenci", "valenc"}, {"digitizer", "digit"}, {"conformabli", "conform"},
+            {"radicalli", "radic"}, {"differentli", "differ"}, {"vileli", "vile"}, {"analogousli", "analog"},
+            {"vietnamization", "vietnam"}, {"predication", "predic"}, {"operator", "oper"}, {"feudalism", "feudal"},
+            {"decisiveness", "decis"}, {"hopefulness", "hope"}, {"callousness", "callous"}, {"formaliti", "formal"},
+            {"sensitiviti", "sensit"}, {"sensibiliti", "sensibl"}, {"triplicate", "triplic"}, {"formative", "form"},
+            {"formalize", "formal"}, {"electriciti", "electr"}, {"electrical", "electr"}, {"hopeful", "hope"},
+            {"goodness", "good"}, {"revival", "reviv"}, {"allowance", "allow"}, {"inference", "infer"},
+            {"airliner", "airlin"}, {"gyroscopic", "gyroscop"}, {"adjustable", "adjust"}, {"defensible", "defens"},
+            {"irritant", "irrit"}, {"replacement", "replac"}, {"adjustment", "adjust"}, {"dependent", "depend"},
+            {"adoption", "adopt"}, {"homologou", "homolog"}, {"communism", "commun"}, {"activate", "activ"},
+            {"angulariti", "angular"}, {"homologous", "homolog"}, {"effective", "effect"}, {"bowdlerize", "bowdler"},
+            {"probate", "probat"}, {"rate", "rate"}, {"cease", "ceas"}, {"controll", "control"}, {"roll", "roll"},
+            {"generalizations", "gener"}, {"oscillators", "oscil"}, {"cheeses", "chees"}, {"cheese", "chees"},
+        };
+
+        for (String[] example : examples) {
+            assertEquals(example[1], stemmer.stem(example[0]), example[0]);
+        }
+    }
+
+    @Test
+    void unchangedTokensAreNotCopied() {
+        PorterStemmer stemmer = new PorterStemmer();
+        String token = new String("goat");
+
+        assertSame(token, stemmer.stem(token));
+        assertSame(token, stemmer.normalize(List.of(token)).get(0));
+        assertEquals(List.of("a", "42", "goat", "chees", "connect", "connect"),
+            stemmer.normalize(List.of("a", "42", "goats", "cheeses", "connected", "connecting")));
+    }
+
+    @Test
+    void queriesAreNormalizedLikeDocuments() {
+        ReverseIndex reverseIndex = new ReverseIndex();
+        reverseIndex.setNormalizer(new PorterStemmer());
+        JsonObject document = new JsonObject();
+        document.addProperty("url", "http://cheesy/goat");
+        document.addProperty("title", "Goats");
+        document.addProperty("headings", "Connected cheeses");
+        document.addProperty("paragraphs", "Goats are giving milk.");
+
+        reverseIndex.processDocuments(List.of(document));
+
+        for (String query : new String[] {"goat", "GOATS", "cheese", "connection"}) {
+            assertEquals(List.of("http://cheesy/goat"),
+                reverseIndex.searchQuery(query, false, 10).stream().map(Map.Entry::getKey).toList(), query);
+        }
+    }
+
+    @Test
+    void normalizersByName() {
+        assertNull(TokenNormalizer.forName("none"));
+        assertEquals("porter", TokenNormalizer.forName("porter").getName());
+        assertEquals("lemma", TokenNormalizer.forName("lemma").getName());
+        assertEquals("none", TokenNormalizer.nameOf(null));
+        assertThrows(IllegalArgumentException.class, () -> TokenNormalizer.forName("snowball"));
+    }
+}
@@ -0,0 +1,218 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the cache of decoded posting blocks.
+ */
+
+class PostingBlockCacheTests {
+
+    // Room for about four full blocks.
+    private static final long CACHE_BYTES = 4 * (96 + CompressedPostingList.BLOCK_SIZE * 8) + 100;
+
+    @Test
+    void cachedCursorMatchesDecodedCursor() {
+        Random random = new Random(25);
+        CompressedPostingList compressed = CompressedPostingList.compress(
+            PostingListTests.createPostingList(PostingListTests.randomPostings(random, 400)));
+        PostingBlockCache cache = new PostingBlockCache(1L << 20);
+        CompressedPostingList cached = compressed.withBlockCache(cache, 7);
+
+        for (int round = 0; round < 3; round++) {
+            assertSameCursor(compressed.cursor(), cached.cursor(), random);
+        }
+        assertEquals(compressed.blockCount(), cache.size());
+        assertTrue(cache.getHits() > 0);
+        assertTrue(cache.getSizeInBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    void rareLongListDoesNotFlushCache() {
+        Random random = new Random(26);
+        PostingBlockCache cache = new PostingBlockCache(CACHE_BYTES);
+        CompressedPostingList hot = CompressedPostingList.compress(PostingListTests.createPostingList(
+            PostingListTests.randomPostings(random, 4 * CompressedPostingList.BLOCK_SIZE))).withBlockCache(cache, 1);
+        CompressedPostingList rare = CompressedPostingList.compress(PostingListTests.createPostingList(
+            PostingListTests.randomPostings(random, 30 * CompressedPostingList.BLOCK_SIZE))).withBlockCache(cache, 2);
+
+        // The blocks of the hot list are admitted when they are requested the second time.
+        readAll(hot);
+        assertEquals(0, cache.size());
+        readAll(hot);
+        readAll(hot);
+        assertEquals(4, cache.size());
+
+        // The blocks of the rare list are requested once, so they don`t replace the blocks of the hot list.
+        long rejections = cache.getRejections();
+        readAll(rare);
+        assertEquals(rejections + 30, cache.getRejections());
+        assertEquals(0, cache.getEvictions());
+
+        long hits = cache.getHits();
+        readAll(hot);
+        assertEquals(hits + 4, cache.getHits());
+        assertTrue(cache.getSizeInBytes() <= CACHE_BYTES);
+    }
+
+    @Test
+    void blocksOfReplacedListsAreNotUsed() {
+        PostingBlockCache cache = new PostingBlockCache(CACHE_BYTES);
+        CompressedPostingList first = CompressedPostingList.compress(
+            new PostingList(new int[] {1, 2, 3}, new float[] {1f, 1f, 1f})).withBlockCache(cache, 5);
+        CompressedPostingList second = CompressedPostingList.compress(
+            new PostingList(new int[] {4, 8}, new float[] {1f, 2f})).withBlockCache(cache, 5);
+
+        readAll(first);
+        readAll(first);
+        PostingCursor cursor = second.cursor();
+
+        assertEquals(4, cursor.next());
+        assertEquals(8, cursor.next());
+        assertEquals(PostingCursor.NO_MORE_DOCS, cursor.next());
+    }
+
+    @Test
+    void rejectedReplacementKeepsCachedBlock() {
+        PostingBlockCache cache = new PostingBlockCache(CACHE_BYTES);
+        Object owner = new Object();
+        int[] docIDs = new int[CompressedPostingList.BLOCK_SIZE];
+        float[] weights = new float[CompressedPostingList.BLOCK_SIZE];
+
+        // Three frequent full blocks and two less frequent small blocks fill the cache.
+        for (int block = 0; block < 5; block++) {
+            for (int request = 0; request < ((block < 3) ? 5 : 2); request++) {
+                assertNull(cache.get(1, block, owner));
+            }
+            cache.put(1, block, owner, docIDs, weights, (block < 3) ? docIDs.length : 10);
+        }
+        assertEquals(5, cache.size());
+
+        // The small block of a new posting list of the token is full, so it needs room, but it is not frequent enough.
+        Object newOwner = new Object();
+        assertNull(cache.get(1, 3, newOwner));
+        long rejections = cache.getRejections();
+        cache.put(1, 3, newOwner, docIDs, weights, docIDs.length);
+
+        assertEquals(rejections + 1, cache.getRejections());
+        assertEquals(0, cache.getEvictions());
+        assertEquals(5, cache.size());
+        assertNotNull(cache.get(1, 3, owner));
+        for (int block = 0; block < 3; block++) {
+            assertNotNull(cache.get(1, block, owner));
+        }
+        assertTrue(cache.getSizeInBytes() <= CACHE_BYTES);
+    }
+
+    @Test
+    void compressedIndexReturnsSameResults() {
+        ReverseIndex cachedIndex = IndexSegmentTests.createCrawler().getReverseIndex();
+        ReverseIndex decodedIndex = IndexSegmentTests.createCrawler().getReverseIndex();
+        for (ReverseIndex reverseIndex : List.of(cachedIndex, decodedIndex)) {
+            reverseIndex.setCompressPostings(true);
+            reverseIndex.setQueryCacheSize(0);
+        }
+        decodedIndex.setPostingBlockCacheSize(0);
+        cachedIndex.refresh();
+        decodedIndex.refresh();
+
+        for (int round = 0; round < 3; round++) {
+            for (String query : new String[] {"cheese", "brie goat", "aged swiss cheese"}) {
+                assertEquals(decodedIndex.searchQuery(query, true, 2), cachedIndex.searchQuery(query, true, 2));
+                assertEquals(decodedIndex.getTokenInfo(query), cachedIndex.getTokenInfo(query));
+            }
+        }
+        assertTrue(cachedIndex.getPostingBlockCache().getHits() > 0);
+    }
+
+    @Test
+    void concurrentCursorsReadSameBlocks() throws Exception {
+        Random random = new Random(27);
+        PostingBlockCache cache = new PostingBlockCache(16L * 1024 * 1024);
+        assertTrue(cache.getSegmentCount() > 1);
+
+        List<CompressedPostingList> lists = new ArrayList<>();
+        List<CompressedPostingList> cachedLists = new ArrayList<>();
+        for (int termID = 0; termID < 20; termID++) {
+            CompressedPostingList list = CompressedPostingList.compress(
+                PostingListTests.createPostingList(PostingListTests.randomPostings(random, 50 + random.nextInt(1000))));
+            lists.add(list);
+            cachedLists.add(list.withBlockCache(cache, termID));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int seed = thread;
+                readers.add(executor.submit(() -> {
+                    Random threadRandom = new Random(seed);
+                    for (int i = 0; i < 200; i++) {
+                        int termID = threadRandom.nextInt(lists.size());
+                        assertSameCursor(lists.get(termID).cursor(), cachedLists.get(termID).cursor(), threadRandom);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(cache.getHits() > cache.getMisses());
+        assertTrue(cache.getSizeInBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    void cacheOnlyExistsForCompressedPostings() {
+        ReverseIndex reverseIndex = new ReverseIndex();
+        assertNull(reverseIndex.getPostingBlockCache());
+
+        reverseIndex.setPostingBlockCacheSize(1L << 20);
+        assertNull(reverseIndex.getPostingBlockCache());
+
+        reverseIndex.setCompressPostings(true);
+        PostingBlockCache cache = reverseIndex.getPostingBlockCache();
+        assertNotNull(cache);
+        assertEquals(1L << 20, cache.getMaxBytes());
+        reverseIndex.setCompressPostings(true);
+        assertSame(cache, reverseIndex.getPostingBlockCache());
+
+        reverseIndex.setCompressPostings(false);
+        assertNull(reverseIndex.getPostingBlockCache());
+    }
+
+    private static void assertSameCursor(PostingCursor expected, PostingCursor actual, Random random) {
+        int docID = expected.next();
+        assertEquals(docID, actual.next());
+
+        while (docID != PostingCursor.NO_MORE_DOCS) {
+            assertEquals(expected.weight(), actual.weight(), 0.0);
+            if (random.nextBoolean()) {
+                docID = expected.next();
+                assertEquals(docID, actual.next());
+            } else {
+                int target = docID + random.nextInt(200);
+                docID = expected.advance(target);
+                assertEquals(docID, actual.advance(target));
+            }
+        }
+    }
+
+    private static void readAll(Postings postings) {
+        PostingCursor cursor = postings.cursor();
+        while (cursor.next() != PostingCursor.NO_MORE_DOCS) {
+            cursor.weight();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import java.util.Random;
+
+/**
+ * Micro benchmark, which compares the size and the decoding speed of uncompressed and compressed posting lists.
+ * It is not executed by the unit tests and can be started with:
+ * java -cp target/classes:target/test-classes de.fernunihagen.dbis.anguillasearch.PostingListBenchmark
+ */
+
+public class PostingListBenchmark {
+
+    private static final int POSTINGS = 2_000_000;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int[] docIDs = new int[POSTINGS];
+        float[] weights = new float[POSTINGS];
+        int docID = 0;
+
+        for (int i = 0; i < POSTINGS; i++) {
+            docID += 1 + random.nextInt(20);
+            docIDs[i] = docID;
+            weights[i] = random.nextFloat();
+        }
+        PostingList postings = new PostingList(docIDs, weights);
+        CompressedPostingList compressed = CompressedPostingList.compress(postings);
+
+        System.out.printf("Uncompressed: %.2f bytes per posting%n", 8.0);
+        System.out.printf("Compressed:   %.2f bytes per posting%n", (double) compressed.sizeInBytes() / POSTINGS);
+
+        measure("Uncompressed next()", postings, false);
+        measure("Compressed next()  ", compressed, false);
+        measure("Uncompressed advance()", postings, true);
+        measure("Compressed advance()  ", compressed, true);
+    }
+
+    private static void measure(String name, Postings postings, boolean skip) {
+        double checksum = 0.0;
+        long best = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            PostingCursor cursor = postings.cursor();
+            int docID = cursor.next();
+
+            while (docID != PostingCursor.NO_MORE_DOCS) {
+                checksum += cursor.weight();
+                docID = skip ? cursor.advance(docID + 1000) : cursor.next();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%s: %.2f ns per posting (checksum %.1f)%n", name, (double) best / POSTINGS, checksum);
+    }
+}
@@ -0,0 +1,130 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the posting lists and their cursors.
+ */
+
+class PostingListTests {
+
+    @Test
+    void cursorReturnsAllPostingsInOrder() {
+        TreeMap<Integer, Float> postings = randomPostings(new Random(1), 1000);
+        PostingCursor cursor = createPostingList(postings).cursor();
+
+        assertEquals(-1, cursor.docID());
+        for (var entry : postings.entrySet()) {
+            assertEquals(entry.getKey(), cursor.next());
+            assertEquals(entry.getValue(), cursor.weight(), 0.0);
+        }
+        assertEquals(PostingCursor.NO_MORE_DOCS, cursor.next());
+        assertEquals(PostingCursor.NO_MORE_DOCS, cursor.next());
+    }
+
+    @Test
+    void advanceFindsFirstPostingNotBeforeTarget() {
+        Random random = new Random(2);
+        TreeMap<Integer, Float> postings = randomPostings(random, 1000);
+        PostingCursor cursor = createPostingList(postings).cursor();
+
+        int target = 0;
+        while (true) {
+            target += random.nextInt(200);
+            Integer expected = postings.ceilingKey(target);
+            int found = cursor.advance(target);
+
+            if (expected == null) {
+                assertEquals(PostingCursor.NO_MORE_DOCS, found);
+                break;
+            }
+            assertEquals(expected.intValue(), found);
+            assertEquals(postings.get(expected), cursor.weight(), 0.0);
+        }
+    }
+
+    @Test
+    void advanceNeverMovesBackwards() {
+        PostingCursor cursor = new PostingList(new int[] {2, 5, 9}, new float[] {1f, 2f, 3f}).cursor();
+
+        assertEquals(5, cursor.advance(4));
+        assertEquals(5, cursor.advance(1));
+        assertEquals(9, cursor.next());
+        assertEquals(PostingCursor.NO_MORE_DOCS, cursor.advance(10));
+    }
+
+    @Test
+    void emptyPostingList() {
+        assertEquals(PostingCursor.NO_MORE_DOCS, PostingList.EMPTY.cursor().next());
+        assertEquals(PostingCursor.NO_MORE_DOCS, PostingList.EMPTY.cursor().advance(3));
+    }
+
+    @Test
+    void compressedCursorMatchesPostingList() {
+        PostingList postings = createPostingList(randomPostings(new Random(3), 1000));
+        CompressedPostingList compressed = CompressedPostingList.compress(postings);
+        PostingCursor cursor = compressed.cursor();
+
+        for (int i = 0; i < postings.size(); i++) {
+            assertEquals(postings.docID(i), cursor.next());
+            // The weights are quantized to 16 bits relative to the highest weight.
+            assertEquals(postings.weight(i), cursor.weight(), postings.maxWeight() / 65535.0);
+        }
+        assertEquals(PostingCursor.NO_MORE_DOCS, cursor.next());
+        assertEquals(8, compressed.blockCount());
+    }
+
+    @Test
+    void compressedAdvanceSkipsBlocks() {
+        Random random = new Random(4);
+        TreeMap<Integer, Float> postings = randomPostings(random, 1000);
+        PostingCursor cursor = CompressedPostingList.compress(createPostingList(postings)).cursor();
+
+        int target = 0;
+        while (true) {
+            target += random.nextInt(2000);
+            Integer expected = postings.ceilingKey(target);
+            int found = cursor.advance(target);
+
+            if (expected == null) {
+                assertEquals(PostingCursor.NO_MORE_DOCS, found);
+                break;
+            }
+            assertEquals(expected.intValue(), found);
+        }
+    }
+
+    @Test
+    void emptyCompressedPostingList() {
+        CompressedPostingList compressed = CompressedPostingList.compress(PostingList.EMPTY);
+
+        assertEquals(PostingCursor.NO_MORE_DOCS, compressed.cursor().next());
+        assertEquals(PostingCursor.NO_MORE_DOCS, compressed.cursor().advance(3));
+    }
+
+    static TreeMap<Integer, Float> randomPostings(Random random, int count) {
+        TreeMap<Integer, Float> postings = new TreeMap<>();
+        int docID = 0;
+
+        for (int i = 0; i < count; i++) {
+            docID += 1 + random.nextInt(100);
+            postings.put(docID, random.nextFloat());
+        }
+        return postings;
+    }
+
+    static PostingList createPostingList(TreeMap<Integer, Float> postings) {
+        int[] docIDs = new int[postings.size()];
+        float[] weights = new float[postings.size()];
+        int i = 0;
+
+        for (var entry : postings.entrySet()) {
+            docIDs[i] = entry.getKey();
+            weights[i++] = entry.getValue();
+        }
+        return new PostingList(docIDs, weights);
+    }
+}
@@ -0,0 +1,151 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the cache of the search results.
+ */
+
+class QueryCacheTests {
+
+    private static final List<Map.Entry<String, Double>> RESULTS = List.of(Map.entry("http://cheesy/a", 1.0));
+
+    @Test
+    void repeatedQueryIsAnsweredFromCache() {
+        ReverseIndex reverseIndex = IndexSegmentTests.createCrawler().getReverseIndex();
+        QueryCache cache = reverseIndex.getQueryCache();
+
+        List<Map.Entry<String, Double>> first = reverseIndex.searchQuery("Aged cheese", true, 3);
+        // Same normalized tokens, so the same cached results.
+        List<Map.Entry<String, Double>> second = reverseIndex.searchQuery("aged the CHEESE", true, 3);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertNotEquals(first, reverseIndex.searchQuery("aged cheese", false, 3));
+        assertEquals(1, reverseIndex.searchQuery("aged cheese", true, 1).size());
+        assertThrows(UnsupportedOperationException.class, () -> first.remove(0));
+
+        reverseIndex.setQueryCacheSize(0);
+        assertEquals(first, reverseIndex.searchQuery("aged cheese", true, 3));
+    }
+
+    @Test
+    void publishedSnapshotInvalidatesCache() {
+        ReverseIndex reverseIndex = new ReverseIndex();
+        reverseIndex.addToken("cheese", "http://cheesy/a", 1.0);
+        reverseIndex.refresh();
+        assertEquals(1, reverseIndex.searchQuery("cheese", false, 10).size());
+
+        reverseIndex.addToken("cheese", "http://cheesy/b", 2.0);
+        // Not published yet, so the cached results are still valid.
+        assertEquals(1, reverseIndex.searchQuery("cheese", false, 10).size());
+
+        reverseIndex.refresh();
+        assertEquals("http://cheesy/b", reverseIndex.searchQuery("cheese", false, 10).get(0).getKey());
+
+        long misses = reverseIndex.getQueryCache().getMisses();
+        reverseIndex.publishPageRank(new PageRankTable(Map.of("http://cheesy/a", 0.9, "http://cheesy/b", 0.1)));
+        reverseIndex.searchQuery("cheese", false, 10);
+        assertEquals(misses + 1, reverseIndex.getQueryCache().getMisses());
+    }
+
+    @Test
+    void frequentQueriesAreNotEvicted() {
+        QueryCache cache = new QueryCache(2);
+        List<String> popular = List.of("cheese");
+        List<String> other = List.of("brie");
+        List<String> rare = List.of("ricotta");
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(popular, true, 10, 1);
+            cache.get(other, true, 10, 1);
+        }
+        cache.put(popular, true, 10, 1, RESULTS);
+        cache.put(other, true, 10, 1, RESULTS);
+
+        // A query which was requested once doesn`t replace the popular queries.
+        assertNull(cache.get(rare, true, 10, 1));
+        cache.put(rare, true, 10, 1, RESULTS);
+        assertEquals(0, cache.getEvictions());
+        assertNotNull(cache.get(popular, true, 10, 1));
+        assertNotNull(cache.get(other, true, 10, 1));
+
+        // After many requests it replaces the least recently used query.
+        for (int i = 0; i < 10; i++) {
+            cache.get(rare, true, 10, 1);
+        }
+        cache.put(rare, true, 10, 1, RESULTS);
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(popular, true, 10, 1));
+        assertNotNull(cache.get(other, true, 10, 1));
+        assertNotNull(cache.get(rare, true, 10, 1));
+    }
+
+    @Test
+    void resultsOfOtherSnapshotsAreIgnored() {
+        QueryCache cache = new QueryCache(10);
+        List<String> query = List.of("cheese");
+
+        cache.put(query, false, 10, 2, RESULTS);
+        assertNull(cache.get(query, false, 10, 1));
+        cache.put(query, false, 10, 1, RESULTS);
+        assertNotNull(cache.get(query, false, 10, 2));
+
+        assertNull(cache.get(query, false, 10, 3));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void concurrentQueriesGetTheirOwnResults() throws Exception {
+        int capacity = 50;
+        int threads = 8;
+        int requests = 20_000;
+        QueryCache cache = new QueryCache(capacity);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int seed = thread;
+                workers.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < requests; i++) {
+                        // Skewed like real queries, so a few queries are requested most of the time.
+                        int query = (int) Math.min(199, Math.abs(random.nextGaussian()) * 20);
+                        List<String> tokens = List.of("token" + query);
+                        String url = "http://cheesy/" + query;
+
+                        List<Map.Entry<String, Double>> results = cache.get(tokens, false, 10, 1);
+                        if (results == null) {
+                            cache.put(tokens, false, 10, 1, List.of(Map.entry(url, 1.0)));
+                        } else {
+                            assertEquals(url, results.get(0).getKey());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals((long) threads * requests, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= capacity);
+        assertTrue(cache.getHits() > cache.getMisses());
+    }
+}
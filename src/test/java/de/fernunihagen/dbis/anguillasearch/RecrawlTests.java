@@ -0,0 +1,187 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the incremental re-crawl. The intranet is served by a local HTTP server, which supports ETags.
+ */
+
+class RecrawlTests {
+
+    private HttpServer server;
+    private String baseUrl;
+    // Content of the pages by path. Missing pages are answered with 404.
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        server.createContext("/", exchange -> {
+            String body = pages.get(exchange.getRequestURI().getPath());
+            String etag = (body != null) ? "\"" + Integer.toHexString(body.hashCode()) + "\"" : null;
+
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/html");
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+                fullResponses.incrementAndGet();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        putPage("a", "cheese brie cheese", "b", "c");
+        putPage("b", "brie goat aged", "c");
+        putPage("c", "aged swiss cheese goat", "a");
+        putPage("d", "goat goat ricotta", "a");
+        putPage("seed", "seed page", "a", "d");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void unchangedIntranetIsNotFetchedAgain() throws IOException {
+        Crawler crawler = crawl();
+        fullResponses.set(0);
+
+        assertEquals(0, crawler.recrawl());
+        assertEquals(0, fullResponses.get());
+    }
+
+    @Test
+    void recrawlMatchesFreshCrawl() throws IOException {
+        Crawler crawler = crawl();
+
+        // b changes and links to the new page e, d is removed together with the link of the seed page.
+        putPage("b", "brie goat brie mozzarella", "c", "e");
+        putPage("e", "mozzarella ricotta", "a");
+        putPage("seed", "seed page", "a");
+        pages.remove("/d");
+        fullResponses.set(0);
+
+        assertEquals(4, crawler.recrawl());
+        // Only the changed and the new pages are transferred completely.
+        assertEquals(3, fullResponses.get());
+
+        Crawler freshCrawler = crawl();
+        assertEquals(freshCrawler.getCrawledPages().size(), crawler.getCrawledPages().size());
+
+        for (String query : new String[] {"brie", "mozzarella ricotta", "goat", "aged swiss cheese"}) {
+            List<Map.Entry<String, Double>> expected = freshCrawler.getReverseIndex().searchQuery(query, false);
+            List<Map.Entry<String, Double>> actual = crawler.getReverseIndex().searchQuery(query, false);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+                assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), 1e-12);
+            }
+        }
+
+        for (PageData page : freshCrawler.getCrawledPages()) {
+            double expected = freshCrawler.getReverseIndex().getPageRankTable().getScore(page.getURL());
+            double actual = crawler.getReverseIndex().getPageRankTable().getScore(page.getURL());
+            assertEquals(expected, actual, 0.001);
+        }
+        assertTrue(crawler.getReverseIndex().getTokenInfo("ricotta").keySet().stream().noneMatch(url -> url.endsWith("/d")));
+        assertEquals(freshCrawler.getAllLinksFromJSON(null), crawler.getAllLinksFromJSON(null));
+    }
+
+    @Test
+    void failedNewPageIsSkipped() throws IOException {
+        Crawler crawler = crawl(4, 2);
+
+        // b links to a missing page and to a host which refuses the connection.
+        pages.put("/b", "<html><head><title>b</title></head><body><h1>b</h1><div>brie mozzarella</div>"
+            + "<a href='/c'>c</a><a href='/missing'>missing</a><a href='http://127.0.0.1:1/refused'>refused</a>"
+            + "</body></html>");
+
+        assertEquals(1, crawler.recrawl());
+        assertEquals(5, crawler.getCrawledPages().size());
+        assertEquals(List.of(baseUrl + "/b"), new ArrayList<>(crawler.getReverseIndex().getTokenInfo("mozzarella").keySet()));
+
+        // The missing page is requested again as soon as it exists and a changed page links to it.
+        putPage("missing", "ricotta");
+        putPage("b", "brie goat", "c", "missing");
+        assertEquals(2, crawler.recrawl());
+        assertEquals(6, crawler.getCrawledPages().size());
+        assertTrue(crawler.getReverseIndex().getTokenInfo("ricotta").containsKey(baseUrl + "/missing"));
+    }
+
+    @Test
+    void removedPageIsNotStoredInSegment(@TempDir Path directory) throws IOException {
+        Crawler crawler = crawl();
+        String removedUrl = baseUrl + "/d";
+        int removedDocID = crawler.getDocuments().getDocID(removedUrl);
+
+        putPage("seed", "seed page", "a");
+        pages.remove("/d");
+        assertEquals(2, crawler.recrawl());
+
+        Path path = directory.resolve("recrawled.segment");
+        IndexSegment.write(path, crawler);
+        IndexSegment segment = IndexSegment.open(path);
+        DocumentStore store = segment.getDocumentStore();
+
+        assertEquals(crawler.getDocumentStore().size(), store.size());
+        assertEquals(-1, store.getDocID(removedUrl));
+        assertFalse(store.contains(removedDocID));
+        assertNull(segment.getPages().get(removedDocID));
+        assertEquals(0.0, segment.getPageRankTable().getScore(removedUrl), 0.0);
+        assertEquals("a", store.getTitle(store.getDocID(baseUrl + "/a")));
+    }
+
+    private Crawler crawl() throws IOException {
+        return crawl(1, 1);
+    }
+
+    private Crawler crawl(int maxConcurrency, int maxConcurrencyPerHost) throws IOException {
+        JsonArray seeds = new JsonArray();
+        seeds.add(baseUrl + "/seed");
+        JsonObject json = new JsonObject();
+        json.add("Seed-URLs", seeds);
+
+        Crawler crawler = new Crawler();
+        crawler.setStreamingIndex(true);
+        crawler.setConcurrency(maxConcurrency, maxConcurrencyPerHost);
+        crawler.crawl(json);
+        return crawler;
+    }
+
+    private void putPage(String name, String text, String... links) {
+        StringBuilder html = new StringBuilder("<html><head><title>" + name + "</title></head><body><h1>" + name + "</h1>");
+        html.append("<div>").append(text).append("</div>");
+        for (String link : links) {
+            html.append("<a href='/").append(link).append("'>").append(link).append("</a>");
+        }
+        pages.put("/" + name, html.append("</body></html>").toString());
+    }
+}
@@ -1,13 +1,27 @@
 package de.fernunihagen.dbis.anguillasearch;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jsoup.Jsoup;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
   
 /**
  * Unit tests for the reverse index. 
@@ -52,4 +66,320 @@ class ReverseIndexTests {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void streamingIndexTFIDF() {
+        ReverseIndex streamingIndex = new ReverseIndex();
+
+        for (JsonObject page : testPages) {
+            String content = page.get("title").getAsString() + " " +
+                             page.get("headings").getAsString() + " " +
+                             page.get("paragraphs").getAsString();
+            streamingIndex.indexDocument(page.get("url").getAsString(), streamingIndex.tokenizeContent(content));
+        }
+        streamingIndex.refresh();
+
+        for (Entry<String, JsonElement> entry : correctReverseIdex.entrySet()) {
+            String token = entry.getKey();
+
+            for (Entry<String, JsonElement> pageEntry : entry.getValue().getAsJsonObject().entrySet()) {
+                Double indexTfidf = streamingIndex.getTokenInfo(token).get(pageEntry.getKey());
+
+                assertTrue(indexTfidf != null, "URL fehlt für Token: " + token);
+                assertTrue(Math.abs(pageEntry.getValue().getAsDouble() - indexTfidf) < 0.0001);
+            }
+        }
+    }
+
+    @Test
+    void cosineSearchUsesAllQueryTokens() {
+        ReverseIndex index = new ReverseIndex();
+        index.addToken("cheese", "d1", 0.4);
+        index.addToken("brie", "d1", 0.3);
+        index.addToken("cheese", "d2", 0.5);
+        index.addToken("brie", "d3", 0.2);
+        index.publishPageRank(new PageRankTable(Map.of("d1", 0.1, "d2", 0.1, "d3", 0.1)));
+
+        List<Map.Entry<String, Double>> results = index.searchQuery("cheese brie", true);
+
+        // The vector of d1 contains both tokens, so it is more similar to the query than the other documents.
+        // The posting lists store the TF-IDF-scores as floats.
+        assertEquals("d1", results.get(0).getKey());
+        assertEquals(0.75 * 0.1 + 0.25 * 0.7 / (Math.sqrt(2) * 0.5), results.get(0).getValue(), 1e-6);
+        assertEquals(0.75 * 0.1 + 0.25 * 0.5 / (Math.sqrt(2) * 0.5), results.get(1).getValue(), 1e-6);
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    void repeatedQueryTokensCountOnce() {
+        ReverseIndex index = new ReverseIndex();
+        index.setQueryCacheSize(0);
+        index.addToken("cheese", "d1", 0.4);
+        index.addToken("brie", "d1", 0.3);
+        index.addToken("cheese", "d2", 0.5);
+        index.publishPageRank(new PageRankTable(Map.of("d1", 0.1, "d2", 0.1)));
+
+        // The query vector has the three distinct tokens cheese, brie and ricotta, each with the weight 1.
+        for (boolean dynamicPruning : new boolean[] {false, true}) {
+            index.setDynamicPruning(dynamicPruning);
+            List<Map.Entry<String, Double>> results = index.searchQuery("cheese ricotta cheese brie ricotta", true, 1);
+
+            assertEquals("d1", results.get(0).getKey());
+            assertEquals(0.75 * 0.1 + 0.25 * 0.7 / (Math.sqrt(3) * 0.5), results.get(0).getValue(), 1e-6);
+        }
+    }
+
+    @Test
+    void searchContextsAreReusedByNewThreads() throws InterruptedException {
+        ReverseIndex index = new ReverseIndex();
+        index.processDocuments(testPages);
+        index.setQueryCacheSize(0);
+
+        // Every query runs on a new thread, like on the virtual threads of the search server.
+        for (int i = 0; i < 20; i++) {
+            Thread thread = new Thread(() -> index.searchQuery("cheese", true, 2));
+            thread.start();
+            thread.join();
+        }
+        assertEquals(1, index.getPooledSearchContexts());
+    }
+
+    @Test
+    void prunedSearchMatchesExhaustiveSearch() {
+        ReverseIndex index = new ReverseIndex();
+        index.processDocuments(testPages);
+        List<String> tokens = new ArrayList<>(correctReverseIdex.keySet());
+        Random random = new Random(8);
+
+        for (int query = 0; query < 50; query++) {
+            String searchQuery = tokens.get(random.nextInt(tokens.size())) + " " + tokens.get(random.nextInt(tokens.size()));
+            boolean useCosineSimilarity = random.nextBoolean();
+
+            index.setDynamicPruning(true);
+            List<Map.Entry<String, Double>> pruned = index.searchQuery(searchQuery, useCosineSimilarity, 2);
+            index.setDynamicPruning(false);
+            List<Map.Entry<String, Double>> exhaustive = index.searchQuery(searchQuery, useCosineSimilarity, 2);
+
+            assertEquals(exhaustive, pruned);
+        }
+    }
+
+    @Test
+    void searchReadsPublishedSnapshot() {
+        ReverseIndex index = new ReverseIndex();
+        index.indexDocument("d1", List.of("cheese", "brie"));
+        index.refresh();
+        long generation = index.getSnapshot().getGeneration();
+
+        index.indexDocument("d2", List.of("cheese"));
+        assertEquals(1, index.searchQuery("cheese", false).size());
+
+        index.refresh();
+        assertEquals(2, index.searchQuery("cheese", false).size());
+        assertTrue(index.getSnapshot().getGeneration() > generation);
+    }
+
+    @Test
+    void publishedPagesAreNotChanged() {
+        Crawler crawler = IndexSegmentTests.createCrawler();
+        List<PageData> published = crawler.getCrawledPages();
+        Map<String, Double> pageRanks = new HashMap<>();
+        for (PageData page : published) {
+            pageRanks.put(page.getURL(), page.getPageRank());
+        }
+
+        // The scores of a query are only set on the returned pages.
+        Vector query = new Vector();
+        query.addToken("cheese", 1);
+        List<PageData> ranked = crawler.rankWebsites(query, 2);
+        assertEquals(2, ranked.size());
+        assertTrue(ranked.get(0).getScore() >= ranked.get(1).getScore());
+        assertTrue(ranked.get(1).getScore() > 0.0);
+        for (PageData page : published) {
+            assertEquals(0.0, page.getScore());
+        }
+
+        // A new page changes the PageRank of the other pages, but only in the next published pages.
+        String html = "<html><body><p>ricotta</p><a href='http://cheesy/a'>a</a></body></html>";
+        crawler.processPage("http://cheesy/e", Jsoup.parse(html, "http://cheesy/e"));
+        crawler.calculateTFIDF();
+        crawler.calculatePageRank();
+
+        for (PageData page : published) {
+            assertEquals(pageRanks.get(page.getURL()), page.getPageRank(), 0.0);
+        }
+        assertEquals(5, crawler.getCrawledPages().size());
+        for (PageData page : crawler.getCrawledPages()) {
+            assertEquals(crawler.getReverseIndex().getPageRankTable().getScore(page.getURL()), page.getPageRank(), 0.0);
+        }
+        assertNotEquals(pageRanks.get("http://cheesy/a"), crawler.getPage(0).getPageRank());
+    }
+
+    @Test
+    void snapshotKeepsItsDocumentStore() {
+        Crawler crawler = IndexSegmentTests.createCrawler();
+        ReverseIndex reverseIndex = crawler.getReverseIndex();
+        IndexSnapshot before = reverseIndex.getSnapshot();
+        DocumentStore store = before.getDocumentStore();
+        assertEquals(4, store.size());
+        assertEquals(crawler.getDocumentStore(), store);
+
+        // A new page is only visible in the store of the next snapshot, together with its postings.
+        String html = "<html><head><title>Ricotta</title></head><body><p>ricotta</p></body></html>";
+        crawler.processPage("http://cheesy/e", Jsoup.parse(html, "http://cheesy/e"));
+        crawler.calculateTFIDF();
+        crawler.calculatePageRank();
+
+        IndexSnapshot after = reverseIndex.getSnapshot();
+        assertSame(store, before.getDocumentStore());
+        assertEquals(5, after.getDocumentStore().size());
+        List<Entry<String, Double>> results = reverseIndex.searchQuery("ricotta", false, 1, after);
+        assertEquals("http://cheesy/e", results.get(0).getKey());
+        assertEquals("Ricotta", after.getDocumentStore().getTitle(after.getDocumentStore().getDocID("http://cheesy/e")));
+        assertTrue(reverseIndex.searchQuery("ricotta", false, 1, before).isEmpty());
+        assertEquals(-1, store.getDocID("http://cheesy/e"));
+
+        // A new store without new postings is published by the next refresh.
+        reverseIndex.setDocumentStore(DocumentStore.EMPTY);
+        assertSame(after, reverseIndex.getSnapshot());
+        reverseIndex.refresh();
+        assertSame(DocumentStore.EMPTY, reverseIndex.getSnapshot().getDocumentStore());
+        assertEquals(after.getGeneration() + 1, reverseIndex.getSnapshot().getGeneration());
+    }
+
+    @Test
+    void pageRankIsCalculatedOnce() throws Exception {
+        // A small intranet on a local server, which counts the fetched pages.
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String link = exchange.getRequestURI().getPath().equals("/a") ? "/b" : "/a";
+            byte[] body = ("<html><body><p>cheese</p><a href='" + link + "'>link</a></body></html>")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            JsonArray seeds = new JsonArray();
+            seeds.add("http://127.0.0.1:" + server.getAddress().getPort() + "/a");
+            JsonObject json = new JsonObject();
+            json.add("Seed-URLs", seeds);
+
+            ReverseIndex index = new ReverseIndex();
+            index.indexDocument(seeds.get(0).getAsString(), List.of("cheese"));
+            index.refresh();
+
+            // Concurrent first queries crawl the intranet only once.
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> searches = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                searches.add(executor.submit(() -> {
+                    start.await();
+                    return index.searchQuery("cheese", true, json).size();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> search : searches) {
+                assertEquals(1, search.get());
+            }
+            assertEquals(2, requests.get());
+
+            // Later queries use the published table.
+            for (int i = 0; i < 3; i++) {
+                index.searchQuery("cheese", true, json);
+            }
+            assertEquals(2, requests.get());
+            assertEquals(0.5, index.getPageRankTable().getScore(seeds.get(0).getAsString()), 0.001);
+        } finally {
+            executor.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void emptyOrFailedPageRankIsNotCalculatedAgain() throws IOException {
+        // An intranet without seeds has an empty PageRank table.
+        JsonObject json = new JsonObject();
+        json.add("Seed-URLs", new JsonArray());
+        ReverseIndex index = new ReverseIndex();
+        index.indexDocument("http://cheesy/a", List.of("cheese"));
+        index.refresh();
+        long generation = index.getSnapshot().getGeneration();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, index.searchQuery("cheese", true, json).size());
+        }
+        assertTrue(index.getPageRankTable().isEmpty());
+        assertEquals(generation + 1, index.getSnapshot().getGeneration());
+
+        // A seed which can`t be fetched is only requested by the first query.
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            JsonArray seeds = new JsonArray();
+            seeds.add("http://127.0.0.1:" + server.getAddress().getPort() + "/missing");
+            JsonObject failingJson = new JsonObject();
+            failingJson.add("Seed-URLs", seeds);
+            ReverseIndex failingIndex = new ReverseIndex();
+            failingIndex.indexDocument("http://cheesy/a", List.of("cheese"));
+            failingIndex.refresh();
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1, failingIndex.searchQuery("cheese", true, failingJson).size());
+            }
+            assertEquals(1, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void concurrentSearchesSeeWholeBatches() throws Exception {
+        ReverseIndex index = new ReverseIndex();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Integer>> searches = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                searches.add(executor.submit(() -> {
+                    int queries = 0;
+                    do {
+                        // The documents are published in batches of 10, so a search never sees a part of a batch.
+                        int results = index.searchQuery("cheese", false).size();
+                        assertEquals(0, results % 10, "Results of a half published batch: " + results);
+                        queries++;
+                    } while (!finished.get());
+                    return queries;
+                }));
+            }
+
+            for (int docID = 0; docID < 500; docID++) {
+                index.indexDocument("d" + docID, List.of("cheese", "brie", "token" + docID));
+                if (docID % 10 == 9) {
+                    index.refresh();
+                }
+            }
+            finished.set(true);
+
+            for (Future<Integer> search : searches) {
+                assertTrue(search.get() > 0);
+            }
+            assertEquals(500, index.searchQuery("cheese", false).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Unit tests for the HTTP search server.
+ */
+
+class SearchServerTests {
+
+    static Crawler crawler;
+    static SearchServer server;
+    static HttpClient client;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        crawler = IndexSegmentTests.createCrawler();
+        server = new SearchServer(crawler);
+        server.start(0);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void searchReturnsSameResultsAsIndex() throws Exception {
+        JsonObject answer = get("/search?q=aged+cheese&k=3");
+        List<Map.Entry<String, Double>> expected = crawler.getReverseIndex().searchQuery("aged cheese", true, 3);
+
+        JsonArray results = answer.getAsJsonArray("results");
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JsonObject result = results.get(i).getAsJsonObject();
+            assertEquals(expected.get(i).getKey(), result.get("url").getAsString());
+            assertEquals(expected.get(i).getValue(), result.get("score").getAsDouble(), 1e-12);
+        }
+        assertEquals("Swiss", results.get(0).getAsJsonObject().get("title").getAsString());
+    }
+
+    @Test
+    void documentLookup() throws Exception {
+        JsonObject byURL = get("/document?url=http%3A%2F%2Fcheesy%2Fd");
+        JsonObject byID = get("/document?id=" + byURL.get("id").getAsInt());
+
+        assertEquals("Goat", byURL.get("title").getAsString());
+        assertEquals(byURL, byID);
+        assertEquals(2, byID.getAsJsonArray("links").size());
+    }
+
+    @Test
+    void stats() throws Exception {
+        JsonObject answer = get("/stats");
+
+        assertEquals(4, answer.get("documents").getAsInt());
+        assertEquals(crawler.getReverseIndex().getSnapshot().getGeneration(), answer.get("generation").getAsLong());
+    }
+
+    @Test
+    void wrongRequestsAreRejected() throws Exception {
+        assertEquals(400, send("/search").statusCode());
+        assertEquals(400, send("/search?q=cheese&k=none").statusCode());
+        assertEquals(404, send("/document?id=42").statusCode());
+        assertEquals(405, client.send(HttpRequest.newBuilder(uri("/stats")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void concurrentSearches() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String query = (i % 2 == 0) ? "goat" : "brie";
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri("/search?q=" + query)).build(),
+                HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+        }
+    }
+
+    private static JsonObject get(String path) throws Exception {
+        HttpResponse<String> response = send(path);
+        assertEquals(200, response.statusCode(), response.body());
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
+    private static HttpResponse<String> send(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+}
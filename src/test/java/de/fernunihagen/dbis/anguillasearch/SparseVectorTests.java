@@ -0,0 +1,93 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the sparse vectors.
+ */
+
+class SparseVectorTests {
+
+    @Test
+    void dotProductMergesTermIDs() {
+        SparseVector vektor1 = new SparseVector(new int[] {1, 4, 7, 9}, new double[] {1.0, 2.0, 3.0, 4.0});
+        SparseVector vektor2 = new SparseVector(new int[] {0, 4, 9, 12}, new double[] {5.0, 0.5, 2.0, 1.0});
+
+        assertEquals(9.0, vektor1.dot(vektor2), 0.0);
+        assertEquals(9.0, vektor2.dot(vektor1), 0.0);
+        assertEquals(0.0, vektor1.dot(SparseVector.EMPTY), 0.0);
+        assertEquals(Math.sqrt(30.0), vektor1.magnitude(), 1e-12);
+        assertEquals(3.0, vektor1.get(7), 0.0);
+        assertEquals(0.0, vektor1.get(8), 0.0);
+    }
+
+    @Test
+    void lookupDotMatchesMerge() {
+        Random random = new Random(12);
+        SparseVector document = randomVector(random, 5000, 2000);
+
+        for (int round = 0; round < 50; round++) {
+            SparseVector query = randomVector(random, 5000, 1 + random.nextInt(5));
+            double expected = 0.0;
+            for (int i = 0; i < query.size(); i++) {
+                expected += query.value(i) * document.get(query.termID(i));
+            }
+
+            assertEquals(expected, query.lookupDot(document), 0.0);
+            assertEquals(expected, document.lookupDot(query), 1e-12);
+            assertEquals(expected, query.dot(document), 0.0);
+            assertEquals(expected, document.dot(query), 0.0);
+        }
+        assertEquals(0.0, SparseVector.EMPTY.lookupDot(document), 0.0);
+        assertEquals(0.0, document.lookupDot(SparseVector.EMPTY), 0.0);
+    }
+
+    @Test
+    void cosineMatchesTokenVectors() {
+        TermDictionary terms = new TermDictionary();
+        Vector vektor1 = new Vector();
+        Vector vektor2 = new Vector();
+        String[] tokens = {"cheese", "ricotta", "brie", "swiss", "goat"};
+
+        for (int i = 0; i < tokens.length; i++) {
+            terms.register(tokens[tokens.length - 1 - i]);
+            vektor1.addToken(tokens[i], 0.1 * (i + 1));
+            vektor2.addToken(tokens[i], 0.5 - 0.1 * i);
+        }
+
+        double expected = Cosine.cosineSimilarity(vektor1, vektor2);
+        double actual = Cosine.cosineSimilarity(SparseVector.fromVector(vektor1, terms), SparseVector.fromVector(vektor2, terms));
+        assertEquals(expected, actual, 1e-12);
+    }
+
+    @Test
+    void unknownTokensCountForMagnitude() {
+        TermDictionary terms = new TermDictionary();
+        terms.register("cheese");
+        Vector vektor = new Vector();
+        vektor.addToken("cheese", 3.0);
+        vektor.addToken("unknown", 4.0);
+
+        SparseVector sparse = SparseVector.fromVector(vektor, terms);
+
+        assertEquals(1, sparse.size());
+        assertEquals(5.0, sparse.magnitude(), 0.0);
+    }
+
+    @Test
+    void unsortedTermIDsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SparseVector(new int[] {3, 1}, new double[] {1.0, 1.0}));
+    }
+
+    private static SparseVector randomVector(Random random, int termCount, int size) {
+        TreeMap<Integer, Double> weights = new TreeMap<>();
+        while (weights.size() < size) {
+            weights.put(random.nextInt(termCount), random.nextDouble());
+        }
+        return new SparseVector(weights.keySet().stream().mapToInt(Integer::intValue).toArray(),
+            weights.values().stream().mapToDouble(Double::doubleValue).toArray());
+    }
+}
@@ -0,0 +1,66 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the tokenizer and the stopword lookup.
+ */
+
+class TokenizerTests {
+
+    @Test
+    void matchesRegularExpressionTokenizer() {
+        Random random = new Random(21);
+        String characters = "abcdefghijKLMNOPQRSTUVWXYZ0123456789_ \t\n.,;:!?-()\"äöü";
+        Tokenizer tokenizer = new Tokenizer();
+
+        for (int text = 0; text < 200; text++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = random.nextInt(500); i > 0; i--) {
+                // Spaces make words of typical lengths, so stopwords occur.
+                content.append(random.nextInt(4) == 0 ? ' ' : characters.charAt(random.nextInt(characters.length())));
+            }
+            content.append(" the a OF Cheese is");
+
+            List<String> expected = Arrays.stream(content.toString().toLowerCase().split("\\W+"))
+                .filter(token -> !token.isEmpty() && !Stopwords.ENGLISH_STOPWORDS.contains(token))
+                .toList();
+            assertEquals(expected, tokenizer.tokenize(content));
+        }
+    }
+
+    @Test
+    void contractionsAreStopwords() {
+        Tokenizer tokenizer = new Tokenizer();
+
+        assertEquals(List.of("eat", "cheese", "rind", "o", "brien", "right"),
+            tokenizer.tokenize("Don't eat the cheese's rind, O'Brien! You're 'right'"));
+        assertEquals(List.of("brie"), tokenizer.tokenize("Isn’t it brie"));
+    }
+
+    @Test
+    void caseIsFolded() {
+        Tokenizer tokenizer = new Tokenizer();
+
+        assertEquals(List.of("gouda", "gouda", "gouda"), tokenizer.tokenize("GOUDA Gouda gouda"));
+        // The Kelvin sign is a capital k.
+        assertEquals(List.of("kase"), tokenizer.tokenize("Kase"));
+        assertEquals(tokenizer.tokenize("CAMEMBERT"), new ReverseIndex().tokenizeContent("camembert"));
+    }
+
+    @Test
+    void stopwordLookup() {
+        for (String stopword : Stopwords.ENGLISH_STOPWORDS) {
+            assertTrue(Stopwords.isStopword(("x" + stopword).toCharArray(), 1, stopword.length()), stopword);
+        }
+        assertFalse(Stopwords.isStopword("abou".toCharArray(), 0, 4));
+        assertFalse(Stopwords.isStopword("aboutx".toCharArray(), 0, 6));
+        assertFalse(Stopwords.isStopword("cheese".toCharArray(), 0, 6));
+        assertFalse(Stopwords.isStopword("the1".toCharArray(), 0, 4));
+        assertFalse(Stopwords.isStopword(new char[0], 0, 0));
+    }
+}
@@ -0,0 +1,78 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the top-k selection of the search results.
+ */
+
+class TopKCollectorTests {
+
+    @Test
+    void keepsBestDocumentsInOrder() {
+        Random random = new Random(5);
+        int documents = 1000;
+        double[] allScores = new double[documents];
+        TopKCollector topK = new TopKCollector(10);
+
+        for (int docID = 0; docID < documents; docID++) {
+            // Few distinct scores, so there are many documents with the same score.
+            allScores[docID] = random.nextInt(50) / 10.0;
+            topK.collect(docID, allScores[docID]);
+        }
+
+        Integer[] expected = new Integer[documents];
+        for (int docID = 0; docID < documents; docID++) {
+            expected[docID] = docID;
+        }
+        Arrays.sort(expected, Comparator.comparingDouble((Integer docID) -> -allScores[docID])
+                                        .thenComparingInt(docID -> docID));
+
+        int[] docIDs = new int[10];
+        double[] scores = new double[10];
+        assertEquals(10, topK.drainSorted(docIDs, scores));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected[i].intValue(), docIDs[i]);
+            assertEquals(allScores[expected[i]], scores[i]);
+        }
+        assertEquals(0, topK.size());
+    }
+
+    @Test
+    void fewerDocumentsThanK() {
+        TopKCollector topK = new TopKCollector(Integer.MAX_VALUE);
+        topK.collect(3, 0.5);
+        topK.collect(1, 0.9);
+
+        int[] docIDs = new int[2];
+        double[] scores = new double[2];
+        topK.drainSorted(docIDs, scores);
+
+        assertArrayEquals(new int[] {1, 3}, docIDs);
+    }
+
+    @Test
+    void resetCollectorTakesNewK() {
+        TopKCollector topK = new TopKCollector(5);
+        for (int docID = 0; docID < 10; docID++) {
+            topK.collect(docID, docID);
+        }
+
+        topK.reset(2);
+        assertEquals(0, topK.size());
+        topK.collect(4, 0.1);
+        topK.collect(7, 0.7);
+        topK.collect(2, 0.3);
+
+        int[] docIDs = new int[2];
+        double[] scores = new double[2];
+        assertEquals(2, topK.drainSorted(docIDs, scores));
+        assertArrayEquals(new int[] {7, 2}, docIDs);
+    }
+}
@@ -0,0 +1,138 @@
+package de.fernunihagen.dbis.anguillasearch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the dynamic pruning of the search.
+ */
+
+class WandQueryProcessorTests {
+
+    private static final int K = 10;
+
+    @Test
+    void pruningReturnsSameResultsAsExhaustiveSearch() {
+        Random random = new Random(5);
+
+        for (int query = 0; query < 20; query++) {
+            PostingList[] postings = randomQuery(random, 2 + random.nextInt(3));
+            double[] priors = new double[200000];
+
+            Result exhaustive = search(postings, priors, false);
+            Result pruned = search(postings, priors, true);
+
+            assertArrayEquals(exhaustive.docIDs, pruned.docIDs);
+            assertArrayEquals(exhaustive.scores, pruned.scores, 0.0);
+            assertTrue(pruned.scoredDocuments <= exhaustive.scoredDocuments);
+        }
+    }
+
+    @Test
+    void pruningWithPriorReturnsSameResultsAsExhaustiveSearch() {
+        Random random = new Random(6);
+
+        for (int query = 0; query < 20; query++) {
+            PostingList[] postings = randomQuery(random, 1 + random.nextInt(3));
+            double[] priors = new double[200000];
+            for (int docID = 0; docID < priors.length; docID++) {
+                priors[docID] = random.nextDouble() * random.nextDouble();
+            }
+
+            Result exhaustive = search(postings, priors, false);
+            Result pruned = search(postings, priors, true);
+
+            assertArrayEquals(exhaustive.docIDs, pruned.docIDs);
+            assertArrayEquals(exhaustive.scores, pruned.scores, 0.0);
+        }
+    }
+
+    @Test
+    void rareTokenSkipsFrequentToken() {
+        Random random = new Random(7);
+        // A frequent token with low scores and a rare token with high scores.
+        PostingList frequent = scaled(PostingListTests.createPostingList(PostingListTests.randomPostings(random, 20000)), 0.1f);
+        PostingList rare = scaled(PostingListTests.createPostingList(PostingListTests.randomPostings(random, 50)), 100f);
+        PostingList[] postings = {frequent, rare};
+
+        Result exhaustive = search(postings, new double[0], false);
+        Result pruned = search(postings, new double[0], true);
+
+        assertArrayEquals(exhaustive.docIDs, pruned.docIDs);
+        assertEquals(20050, exhaustive.scoredDocuments, 50);
+        assertTrue(pruned.scoredDocuments < exhaustive.scoredDocuments / 10);
+    }
+
+    private static Result search(PostingList[] postings, double[] priors, boolean prune) {
+        PostingCursor[] cursors = new PostingCursor[postings.length];
+        double[] upperBounds = new double[postings.length];
+        double priorBound = 0.0;
+
+        for (int i = 0; i < postings.length; i++) {
+            cursors[i] = postings[i].cursor();
+            upperBounds[i] = postings[i].maxWeight();
+        }
+        for (double prior : priors) {
+            priorBound = Math.max(priorBound, prior);
+        }
+
+        TopKCollector topK = new TopKCollector(K);
+        WandQueryProcessor processor = new WandQueryProcessor(cursors, upperBounds, priorBound);
+        processor.search(new WandQueryProcessor.DocumentScorer() {
+
+            @Override
+            public double prior(int docID) {
+                return docID < priors.length ? priors[docID] : 0.0;
+            }
+
+            @Override
+            public double score(int docID, PostingCursor[] matches) {
+                double score = prior(docID);
+                for (PostingCursor cursor : matches) {
+                    if (cursor.docID() == docID) {
+                        score += cursor.weight();
+                    }
+                }
+                return score;
+            }
+        }, topK, prune);
+
+        Result result = new Result();
+        result.docIDs = new int[topK.size()];
+        result.scores = new double[topK.size()];
+        topK.drainSorted(result.docIDs, result.scores);
+        result.scoredDocuments = processor.getScoredDocuments();
+        return result;
+    }
+
+    private static PostingList[] randomQuery(Random random, int tokens) {
+        PostingList[] postings = new PostingList[tokens];
+
+        for (int i = 0; i < tokens; i++) {
+            int count = (random.nextInt(4) == 0) ? 20 + random.nextInt(100) : 500 + random.nextInt(2000);
+            postings[i] = scaled(PostingListTests.createPostingList(PostingListTests.randomPostings(random, count)),
+                    1 + random.nextInt(10));
+        }
+        return postings;
+    }
+
+    private static PostingList scaled(PostingList postings, float factor) {
+        int[] docIDs = new int[postings.size()];
+        float[] weights = new float[postings.size()];
+
+        for (int i = 0; i < docIDs.length; i++) {
+            docIDs[i] = postings.docID(i);
+            weights[i] = (float) postings.weight(i) * factor;
+        }
+        return new PostingList(docIDs, weights);
+    }
+
+    private static final class Result {
+        private int[] docIDs;
+        private double[] scores;
+        private long scoredDocuments;
+    }
+}